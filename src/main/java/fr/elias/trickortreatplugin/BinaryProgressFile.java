@@ -0,0 +1,266 @@
+package fr.elias.trickortreatplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Pumpkin progress as a memory-mapped, fixed-record file (pumpkinprogress.bin).
+ *
+ * The file is itself an open-addressed hash table keyed by UUID (linear probing),
+ * so opening it parses nothing and every read/update is a probe plus an in-place write.
+ *
+ * Layout (big-endian):
+ *   header  32 bytes: magic "TTPG", version, capacity (power of two), count, reserved
+ *   slot    25 bytes: uuid msb (8), uuid lsb (8), total (4), levelsAwarded (4), flags (1)
+ * flags bit 0 = slot used, bit 1 = big win awarded. Entries are never removed.
+ * When the table passes 60% load it is rehashed into a file twice the size, which replaces it atomically.
+ *
+ * All methods are synchronized; the cache reads from the main thread, the writer updates in place.
+ */
+final class BinaryProgressFile implements ProgressStore {
+    static final int MAGIC = 0x54545047; // "TTPG"
+    static final int VERSION = 1;
+
+    private static final int HEADER = 32;
+    private static final int RECORD = 25;
+    private static final int OFF_TOTAL = 16, OFF_AWARDED = 20, OFF_FLAGS = 24;
+    private static final byte USED = 1, BIGWIN = 2;
+    private static final float MAX_LOAD = 0.6f;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final File file;
+    private RandomAccessFile raf;
+    private MappedByteBuffer buf;
+    private int capacity;
+    private int mask;
+    private int count;
+
+    private BinaryProgressFile(File file) {
+        this.file = file;
+    }
+
+    /** Opens (or creates) the file and maps it; nothing is parsed. */
+    static BinaryProgressFile open(File file) throws IOException {
+        BinaryProgressFile f = new BinaryProgressFile(file);
+        if (file.exists() && file.length() > 0) f.map();
+        else f.create(file, MIN_CAPACITY);
+        return f;
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    @Override
+    public boolean directLookup() {
+        return true;
+    }
+
+    @Override
+    public PlayerProgress load(UUID uuid) {
+        PlayerProgress pp = new PlayerProgress();
+        return read(uuid, pp) ? pp : null;
+    }
+
+    @Override
+    public void update(UUID uuid, PlayerProgress pp) throws IOException {
+        write(uuid, pp);
+    }
+
+    @Override
+    public synchronized void updateAll(Map<UUID, PlayerProgress> batch) throws IOException {
+        for (Map.Entry<UUID, PlayerProgress> e : batch.entrySet()) write(e.getKey(), e.getValue());
+        buf.force();
+    }
+
+    /** Fills {@code into} and returns true if the player has a record. */
+    synchronized boolean read(UUID uuid, PlayerProgress into) {
+        int slot = find(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (slot < 0) return false;
+        int off = offset(slot);
+        into.totalBroken = buf.getInt(off + OFF_TOTAL);
+        into.levelsAwarded = buf.getInt(off + OFF_AWARDED);
+        into.bigWinAwarded = (buf.get(off + OFF_FLAGS) & BIGWIN) != 0;
+        return true;
+    }
+
+    /** Inserts or overwrites the player's record in place. */
+    synchronized void write(UUID uuid, PlayerProgress pp) throws IOException {
+        long msb = uuid.getMostSignificantBits(), lsb = uuid.getLeastSignificantBits();
+        int slot = find(msb, lsb);
+        if (slot < 0) {
+            if (count + 1 > capacity * MAX_LOAD) {
+                grow();
+                slot = find(msb, lsb);
+            }
+            slot = -(slot + 1);
+            int off = offset(slot);
+            buf.putLong(off, msb);
+            buf.putLong(off + 8, lsb);
+            put(off, pp);
+            // after the flags byte: a crash in between never leaves count above the used slots
+            count++;
+            buf.putInt(12, count);
+            return;
+        }
+        put(offset(slot), pp);
+    }
+
+    @Override
+    public synchronized void forEach(BiConsumer<UUID, PlayerProgress> action) {
+        for (int slot = 0; slot < capacity; slot++) {
+            int off = offset(slot);
+            byte flags = buf.get(off + OFF_FLAGS);
+            if ((flags & USED) == 0) continue;
+            PlayerProgress pp = new PlayerProgress();
+            pp.totalBroken = buf.getInt(off + OFF_TOTAL);
+            pp.levelsAwarded = buf.getInt(off + OFF_AWARDED);
+            pp.bigWinAwarded = (flags & BIGWIN) != 0;
+            action.accept(new UUID(buf.getLong(off), buf.getLong(off + 8)), pp);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (raf == null) return;
+        buf.force();
+        raf.close();
+        raf = null;
+    }
+
+    /* =========================
+       Table internals
+       ========================= */
+
+    private static int offset(int slot) {
+        return HEADER + slot * RECORD;
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = (msb ^ (lsb * 0x9E3779B97F4A7C15L)) * 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /** @return the slot holding the UUID, or -(free slot + 1) */
+    private int find(long msb, long lsb) {
+        int i = hash(msb, lsb) & mask;
+        while (true) {
+            int off = offset(i);
+            if ((buf.get(off + OFF_FLAGS) & USED) == 0) return -(i + 1);
+            if (buf.getLong(off) == msb && buf.getLong(off + 8) == lsb) return i;
+            i = (i + 1) & mask;
+        }
+    }
+
+    private void put(int off, PlayerProgress pp) {
+        buf.putInt(off + OFF_TOTAL, pp.totalBroken);
+        buf.putInt(off + OFF_AWARDED, pp.levelsAwarded);
+        buf.put(off + OFF_FLAGS, (byte) (USED | (pp.bigWinAwarded ? BIGWIN : 0))); // flags last: marks the slot used
+    }
+
+    private void map() throws IOException {
+        raf = new RandomAccessFile(file, "rw");
+        buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        if (raf.length() < HEADER || buf.getInt(0) != MAGIC) {
+            raf.close();
+            throw new IOException(file.getName() + " is not a progress file");
+        }
+        if (buf.getInt(4) != VERSION) {
+            raf.close();
+            throw new IOException(file.getName() + " has unsupported version " + buf.getInt(4));
+        }
+        capacity = buf.getInt(8);
+        count = buf.getInt(12);
+        if (Integer.bitCount(capacity) != 1 || raf.length() < offset(capacity)) {
+            raf.close();
+            throw new IOException(file.getName() + " is truncated");
+        }
+        mask = capacity - 1;
+    }
+
+    private void create(File target, int cap) throws IOException {
+        raf = new RandomAccessFile(target, "rw");
+        raf.setLength(0);
+        buf = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, offset(cap)); // zero-filled
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, VERSION);
+        buf.putInt(8, cap);
+        buf.putInt(12, 0);
+        capacity = cap;
+        mask = cap - 1;
+        count = 0;
+    }
+
+    /**
+     * Rehashes into a table twice the size: built in a tmp file, then moved over the current one. This instance
+     * only switches to the new file once the move succeeded; otherwise it keeps the old mapping and throws.
+     */
+    private void grow() throws IOException {
+        int oldCap = capacity;
+        if ((long) HEADER + (long) (oldCap << 1) * RECORD > Integer.MAX_VALUE) {
+            throw new IOException(file.getName() + " cannot grow past " + oldCap + " slots");
+        }
+
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        BinaryProgressFile next = new BinaryProgressFile(tmp);
+        try {
+            next.create(tmp, oldCap << 1);
+            forEach((uuid, pp) -> {
+                try {
+                    next.write(uuid, pp);
+                } catch (IOException e) {
+                    throw new java.io.UncheckedIOException(e); // unreachable: twice the capacity never grows
+                }
+            });
+        } finally {
+            next.close();
+        }
+
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp.toPath());
+            throw new IOException("Cannot grow " + file.getName() + " to " + (oldCap << 1)
+                    + " slots, the current file stays in use: " + e.getMessage(), e);
+        }
+        raf.close();
+        map();
+    }
+
+    /* =========================
+       YAML converter
+       ========================= */
+
+    /**
+     * Converts pumpkinprogress.yml (sections and legacy int-only entries) into a new binary file.
+     * The target is written next to it first and only replaces an existing file when complete.
+     * @return number of players converted
+     */
+    static int convertYaml(File yamlFile, File target, Logger log) throws IOException {
+        YamlProgressStore yaml = new YamlProgressStore(yamlFile, log);
+        Map<UUID, PlayerProgress> all = new HashMap<>();
+        yaml.forEach(all::put);
+
+        File tmp = new File(target.getParentFile(), target.getName() + ".convert");
+        Files.deleteIfExists(tmp.toPath());
+        BinaryProgressFile out = new BinaryProgressFile(tmp);
+        out.create(tmp, Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, (int) (all.size() / MAX_LOAD))) << 1));
+        try {
+            for (Map.Entry<UUID, PlayerProgress> e : all.entrySet()) out.write(e.getKey(), e.getValue());
+        } finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return all.size();
+    }
+}
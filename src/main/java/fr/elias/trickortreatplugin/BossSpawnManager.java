@@ -3,17 +3,13 @@ package fr.elias.trickortreatplugin;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
-import org.bukkit.Sound;
 import org.bukkit.World;
 import org.bukkit.attribute.Attribute;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.*;
 import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.Material;
-import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 
@@ -32,19 +28,16 @@ public class BossSpawnManager {
     private static final String TAG_BOSS   = "TT_BOSS_HORSEMAN";
     private static final String TAG_MINION = "TT_BOSS_MINION";
 
-    private final JavaPlugin plugin;
-    private final FileConfiguration cfg;          // hauntedmobs.yml (full)
-    private final ConfigurationSection bossCfg;   // boss-mobs.headless-horseman
+    private final TrickOrTreatPlugin plugin;   // settings are read per call, so a reload applies to a live boss
 
     private final Random random = new Random();
-    private final Map<UUID, Long> manualCooldowns = new HashMap<>(); // per-player
+    private final CooldownService.Namespace manualCooldowns; // per-player, survives reload
 
     // Single-instance tracking
     private UUID activeBossId = null;   // rider skeleton UUID (authoritative)
     private int  minionTaskId  = -1;
 
-    // Auto-spawn cooldown (re-uses death cooldown period)
-    private final long cooldownTimeMs;
+    // Auto-spawn cooldown (re-uses death cooldown period); survives reload
     private long lastAutoSpawnMs = 0L;
 
     // Forced-chunk tracking while boss is alive
@@ -56,13 +49,9 @@ public class BossSpawnManager {
     // Track last player who damaged the *current* boss
     private UUID lastBossDamager = null;
 
-    public BossSpawnManager(JavaPlugin plugin, ConfigurationSection bossConfig, FileConfiguration hauntedMobsConfig) {
+    public BossSpawnManager(TrickOrTreatPlugin plugin) {
         this.plugin = plugin;
-        this.bossCfg = bossConfig;
-        this.cfg = hauntedMobsConfig;
-        this.cooldownTimeMs = bossConfig != null
-                ? bossConfig.getLong("cooldown-of-spawn-after-death", 3600) * 1000L
-                : 3600_000L;
+        this.manualCooldowns = plugin.getCooldowns().namespace("boss-spawn");
         // Try to adopt an existing boss on startup (e.g., after /reload)
         adoptExistingBossIfAny();
     }
@@ -94,7 +83,7 @@ public class BossSpawnManager {
        ========================= */
 
     public void spawnHeadlessHorseman(Player player) {
-        if (bossCfg == null) {
+        if (bossCfg() == null) {
             if (player != null) player.sendMessage(ChatColor.RED + "Boss config missing.");
             return;
         }
@@ -103,21 +92,19 @@ public class BossSpawnManager {
             return;
         }
 
-        double chance = bossCfg.getDouble("spawn-chance", 1.0);
+        double chance = bossCfg().spawnChance();
         if (chance < 1.0 && random.nextDouble() > chance) {
             if (player != null) player.sendMessage(ChatColor.GRAY + "The air feels cold... but nothing appears.");
             return;
         }
 
         if (player != null) {
-            long now = System.currentTimeMillis();
-            Long last = manualCooldowns.get(player.getUniqueId());
-            if (last != null && now - last < cooldownTimeMs) {
-                long left = (cooldownTimeMs - (now - last)) / 1000L;
+            long leftMs = manualCooldowns.tryAcquire(player.getUniqueId(), bossCfg().cooldownMs());
+            if (leftMs > 0) {
+                long left = leftMs / 1000L;
                 player.sendMessage(ChatColor.RED + "You must wait " + left + " seconds to spawn the Headless Horseman again!");
                 return;
             }
-            manualCooldowns.put(player.getUniqueId(), now);
         }
 
         Location loc = (player != null) ? getSpawnLocation(player) : getConfiguredCenterLocation();
@@ -128,19 +115,14 @@ public class BossSpawnManager {
         doSpawnAt(loc, /*forceChunk*/ shouldForceChunkForAutoMode());
     }
 
-    private String colorize(String s) {
-        if (s == null) return null;
-        return ChatColor.translateAlternateColorCodes('&', s);
-    }
-
     public boolean spawnHeadlessHorsemanAtConfiguredCenter() {
-        if (bossCfg == null) return false;
+        if (bossCfg() == null) return false;
         if (isBossAlive()) return false;
 
         Location loc = getConfiguredCenterLocation();
         if (loc == null) return false;
 
-        double chance = bossCfg.getDouble("spawn-chance", 1.0);
+        double chance = bossCfg().spawnChance();
         if (chance < 1.0 && random.nextDouble() > chance) return false;
 
         doSpawnAt(loc, /*forceChunk*/ shouldForceChunkForAutoMode());
@@ -152,23 +134,20 @@ public class BossSpawnManager {
        ========================= */
 
     public void tryAutoSpawn() {
-        if (bossCfg == null) return;
+        if (bossCfg() == null) return;
         if (isBossAlive()) return; // hard guard
 
-        ConfigurationSection auto = bossCfg.getConfigurationSection("auto");
-        if (auto == null || !auto.getBoolean("enabled", false)) return;
+        ConfigSnapshot.Auto auto = bossCfg().auto();
+        if (!auto.enabled()) return;
 
         Location center = getConfiguredCenterLocation();
         if (center == null || center.getWorld() == null) return;
 
-        long from = auto.getLong("world-time.from", 0);
-        long to   = auto.getLong("world-time.to",   23999);
         long time = center.getWorld().getTime();
-        if (!isInTimeWindow(time, from, to)) return;
+        if (!isInTimeWindow(time, auto.timeFrom(), auto.timeTo())) return;
 
-        boolean requireNearby = auto.getBoolean("require-player-nearby", true);
-        if (requireNearby) {
-            int radius = Math.max(1, auto.getInt("region-radius", 96));
+        if (auto.requirePlayerNearby()) {
+            int radius = auto.regionRadius();
             boolean anyNearby = Bukkit.getOnlinePlayers().stream()
                     .anyMatch(p -> p.getWorld().equals(center.getWorld())
                             && p.getLocation().distanceSquared(center) <= (radius * (double) radius));
@@ -176,7 +155,7 @@ public class BossSpawnManager {
         }
 
         long now = System.currentTimeMillis();
-        if (now - lastAutoSpawnMs < cooldownTimeMs) return;
+        if (now - lastAutoSpawnMs < bossCfg().cooldownMs()) return;
 
         // Ensure chunk loaded before spawning
         ensureChunkLoaded(center, shouldForceChunkForAutoMode());
@@ -207,23 +186,9 @@ public class BossSpawnManager {
         // Clear active boss + start cooldown + reset last hitter
         clearActiveBoss(true);
 
-        // Broadcast message
-        String msg = cfg.getString("boss-mobs.headless-horseman.reward.message",
-                "The Headless Horseman has been slain!");
-        Bukkit.broadcastMessage(ChatColor.GOLD + ChatColor.translateAlternateColorCodes('&', msg));
-
-        // Reward commands to credited player (fallback finder)
-        List<String> cmds = cfg.getStringList("boss-mobs.headless-horseman.reward.random-commands");
-        Player credited = resolveKillerFallback(event);
-        if (!cmds.isEmpty() && credited != null) {
-            String cmd = cmds.get(new Random().nextInt(cmds.size()));
-            String finalCmd = cmd.replace("%player%", credited.getName());
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), finalCmd);
-        }
-
-        String rewardSound = cfg.getString("boss-mobs.headless-horseman.reward.sound", "");
-        if (rewardSound != null && !rewardSound.isEmpty()) {
-            playWorldSoundSafe(event.getEntity().getLocation(), rewardSound, 1.0f, 1.0f);
+        // Broadcast message, one random command to the credited player (fallback finder), sound at the body
+        if (bossCfg() != null) {
+            bossCfg().reward().give(plugin.getRewardServices(), resolveKillerFallback(event), event.getEntity().getLocation());
         }
 
         event.getDrops().clear();
@@ -279,8 +244,7 @@ public class BossSpawnManager {
             minionTaskId = -1;
         }
         // despawn remaining minions if configured
-        boolean despawnMinions = bossCfg.getBoolean("minions.despawn-on-boss-death", true);
-        if (despawnMinions) {
+        if (bossCfg() == null || bossCfg().minions().despawnOnBossDeath()) {
             for (World w : Bukkit.getWorlds()) {
                 for (Entity e : w.getEntities()) {
                     if (e.getScoreboardTags().contains(TAG_MINION)) e.remove();
@@ -312,9 +276,8 @@ public class BossSpawnManager {
         }
 
         // Fallback: match custom name (stripped) to stripped configured name
-        String rawConfigured = bossCfg.getString("display-name", "&cHeadless Horseman");
-        String coloredConfigured = colorize(rawConfigured);
-        String strippedConfigured = ChatColor.stripColor(coloredConfigured);
+        if (bossCfg() == null) return false;
+        String strippedConfigured = bossCfg().strippedName();
 
         String actualName = e.getCustomName();
         if (actualName != null) {
@@ -345,15 +308,11 @@ public class BossSpawnManager {
         horse.addScoreboardTag(TAG_BOSS);
         sk.addScoreboardTag(TAG_BOSS);
 
-        // Boss display name from config
-        String rawName = bossCfg.getString("display-name", "&cHeadless Horseman");
-        String coloredName = colorize(rawName);
-
-        // store on skeleton
-        sk.setCustomName(coloredName);
+        // Boss display name from config, stored on skeleton
+        sk.setCustomName(bossCfg().displayName());
         sk.setCustomNameVisible(true);
 
-        double maxHp = bossCfg.getDouble("health", 150.0);
+        double maxHp = bossCfg().health();
         if (sk.getAttribute(Attribute.MAX_HEALTH) != null) {
             sk.getAttribute(Attribute.MAX_HEALTH).setBaseValue(maxHp);
         }
@@ -368,30 +327,23 @@ public class BossSpawnManager {
         }
         sk.addPotionEffect(new PotionEffect(PotionEffectType.STRENGTH, Integer.MAX_VALUE, 1, true, false, true));
 
-        String spawnMsg   = bossCfg.getString(
-                "message-on-spawn",
-                "&aThe Headless Horseman rides again!"
-        );
-        String spawnSound = bossCfg.getString("sound", "entity_lightning_bolt_thunder");
+        Bukkit.broadcastMessage(bossCfg().spawnMessage());
 
-        // colorize before broadcast
-        Bukkit.broadcastMessage(colorize(spawnMsg));
-
-        // play sound same as before
-        playWorldSoundSafe(loc, spawnSound, 1.0f, 1.0f);
+        plugin.getEffects().play(bossCfg().spawnSound(), null, loc);
 
         activeBossId = sk.getUniqueId();
         startMinionWaves(sk);
     }
 
     private void startMinionWaves(Skeleton boss) {
-        if (!bossCfg.getBoolean("minions.enabled", true)) return;
+        ConfigSnapshot.Minions minions = bossCfg().minions();
+        if (!minions.enabled()) return;
 
-        final int period      = Math.max(20, bossCfg.getInt("minions.interval-ticks", 200));
-        final int perWave     = Math.max(1,  bossCfg.getInt("minions.count-per-wave", 3));
-        final int maxAlive    = Math.max(perWave, bossCfg.getInt("minions.max-alive", 10));
-        final double tgtRad   = Math.max(8.0, bossCfg.getDouble("minions.target-radius", 24.0));
-        final List<String> types = bossCfg.getStringList("minions.types");
+        final int period      = minions.intervalTicks();
+        final int perWave     = minions.perWave();
+        final int maxAlive    = minions.maxAlive();
+        final double tgtRad   = minions.targetRadius();
+        final List<String> types = minions.types();
 
         minionTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(plugin, () -> {
             if (boss.isDead() || boss.getWorld() == null || !isBossAlive()) {
@@ -427,22 +379,19 @@ public class BossSpawnManager {
         if (preferredTypes != null && !preferredTypes.isEmpty()) {
             pick = preferredTypes.get(random.nextInt(preferredTypes.size()));
         }
-        if (pick != null) pick = pick.toUpperCase(Locale.ROOT);
 
-        try {
-            if ("BABY_ZOMBIE".equals(pick)) {
-                Zombie z = (Zombie) w.spawnEntity(at, EntityType.ZOMBIE);
-                z.setBaby(true); return z;
-            }
-            if ("BABY_HUSK".equals(pick)) {
-                Zombie z = (Zombie) w.spawnEntity(at, EntityType.HUSK);
-                z.setBaby(true); return z;
-            }
-            if (pick != null) {
-                EntityType type = EntityType.valueOf(pick);
-                return w.spawnEntity(at, type);
-            }
-        } catch (IllegalArgumentException ignored) {}
+        if ("BABY_ZOMBIE".equals(pick)) {
+            Zombie z = (Zombie) w.spawnEntity(at, EntityType.ZOMBIE);
+            z.setBaby(true); return z;
+        }
+        if ("BABY_HUSK".equals(pick)) {
+            Zombie z = (Zombie) w.spawnEntity(at, EntityType.HUSK);
+            z.setBaby(true); return z;
+        }
+        if (pick != null) {
+            EntityType type = KeyResolver.entityType(pick); // validated when compiled, cached
+            if (type != null && type.isSpawnable()) return w.spawnEntity(at, type);
+        }
 
         // Fallback rotation
         switch (random.nextInt(3)) {
@@ -469,13 +418,14 @@ public class BossSpawnManager {
        Chunk helpers & config
        ========================= */
 
+    /** boss-mobs.headless-horseman, compiled (null when missing). */
+    private ConfigSnapshot.Boss bossCfg() {
+        return plugin.settings().haunted().boss();
+    }
+
     private boolean shouldForceChunkForAutoMode() {
-        ConfigurationSection auto = bossCfg.getConfigurationSection("auto");
-        if (auto == null) return false;
-        boolean requireNearby = auto.getBoolean("require-player-nearby", true);
-        boolean forceFlag     = auto.getBoolean("force-load-chunk", false);
-        // If you want spawning with no players near, we must force-load.
-        return forceFlag || !requireNearby;
+        // force-load-chunk, or spawning with no players near (see ConfigSnapshot.Auto)
+        return bossCfg() != null && bossCfg().auto().forceChunk();
     }
 
     private void forceChunkOfLocation(Location loc) {
@@ -519,21 +469,11 @@ public class BossSpawnManager {
     }
 
     private Location getConfiguredCenterLocation() {
-        boolean defined = bossCfg.getBoolean("define-spawn-location", false);
-        if (!defined) return null;
-        String raw = bossCfg.getString("spawn-location", "world,0,64,0");
-        String[] p = raw.split(",");
-        if (p.length < 4) return null;
-        World w = Bukkit.getWorld(p[0]);
+        ConfigSnapshot.SpawnPoint c = bossCfg().center(); // null unless define-spawn-location and valid
+        if (c == null) return null;
+        World w = Bukkit.getWorld(c.world());
         if (w == null) return null;
-        try {
-            double x = Double.parseDouble(p[1]);
-            double y = Double.parseDouble(p[2]);
-            double z = Double.parseDouble(p[3]);
-            return new Location(w, x, y, z);
-        } catch (NumberFormatException e) {
-            return null;
-        }
+        return new Location(w, c.x(), c.y(), c.z());
     }
 
     private Location getSpawnLocation(Player player) {
@@ -549,12 +489,4 @@ public class BossSpawnManager {
         // wraps overnight (e.g., 23000..500)
         return time >= from || time <= to;
     }
-
-    private void playWorldSoundSafe(Location loc, String lowerCaseKey, float vol, float pitch) {
-        if (loc == null || lowerCaseKey == null || lowerCaseKey.isEmpty()) return;
-        try {
-            Sound s = Sound.valueOf(lowerCaseKey.toUpperCase(Locale.ROOT));
-            loc.getWorld().playSound(loc, s, vol, pitch);
-        } catch (IllegalArgumentException ignored) { }
-    }
 }
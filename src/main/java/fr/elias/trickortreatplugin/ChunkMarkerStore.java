@@ -0,0 +1,382 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Markers stored inside the owning chunk's PersistentDataContainer (storage.markers.mode: chunk).
+ * They load and save together with the world: no plugin file, no global in-memory set, nothing read at startup.
+ *
+ * Per chunk the markers are one sorted int[] under trickortreat:pumpkin_markers,
+ * each entry packed as (y:12 | z:4 | x:4 | source:2); lookups are a binary search on the position bits.
+ *
+ * Switching to this mode migrates pumpkinblocks.yml / the pumpkinblocks/ shards once: affected chunks are
+ * loaded a few per tick and their entries merged (markers already in a chunk win). The sources are renamed
+ * to *.migrated when done; if a world is missing they are kept and the migration resumes on the next start.
+ * Worlds that finished are listed in pumpkinblocks.migrated-worlds and skipped then, so each world is
+ * merged exactly once (a marker cleared since then must not come back).
+ */
+final class ChunkMarkerStore implements MarkerStore {
+    private static final int[] EMPTY = new int[0];
+
+    private final TrickOrTreatPlugin plugin;
+    private final NamespacedKey key;
+
+    // one-time migration: world -> chunk key -> entries; null when nothing is left to migrate
+    private Map<String, Map<Long, int[]>> pendingMigration;
+    private BukkitTask migrationTask;
+    private boolean migrationIncomplete;
+    private File doneFile;              // worlds already migrated, one name per line
+    private final Set<String> doneWorlds = new HashSet<>();
+
+    // /tt data import for chunks that were not loaded: world -> chunk key -> entries, applied in chunkLoaded
+    private final Map<String, Map<Long, int[]>> pendingImport = new HashMap<>();
+    private int importsWaiting;
+
+    ChunkMarkerStore(TrickOrTreatPlugin plugin, File shardDir, File legacyFile, ConfigSnapshot.MarkerStorage cfg) {
+        this.plugin = plugin;
+        this.key = new NamespacedKey(plugin, "pumpkin_markers");
+
+        startMigration(shardDir, legacyFile, cfg.migrationChunksPerTick());
+    }
+
+    /* =========================
+       MarkerStore
+       ========================= */
+
+    @Override
+    public int lookup(Block block) {
+        Chunk chunk = block.getChunk();
+        if (pendingMigration != null) migrateChunk(chunk);
+        int[] arr = read(chunk.getPersistentDataContainer());
+        int i = find(arr, positionBits(block.getX(), block.getY(), block.getZ()));
+        return i >= 0 ? (arr[i] & 3) : NONE;
+    }
+
+    @Override
+    public void markPlaced(Block block) {
+        set(block, PLACED);
+    }
+
+    @Override
+    public void markGrown(Block block) {
+        set(block, GROWN);
+    }
+
+    @Override
+    public void clear(Block block) {
+        set(block, NONE);
+    }
+
+    /** One unit per loaded chunk; its array is read when the sweeper reaches it (and only if still loaded). */
+    @Override
+    public List<SweepUnit> sweepUnits() {
+        List<SweepUnit> out = new ArrayList<>();
+        for (World world : Bukkit.getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                out.add(new SweepUnit(world, () -> chunk.isLoaded() ? positions(chunk) : new long[0]));
+            }
+        }
+        return out;
+    }
+
+    private long[] positions(Chunk chunk) {
+        int[] arr = read(chunk.getPersistentDataContainer());
+        long[] out = new long[arr.length];
+        int baseX = chunk.getX() << 4, baseZ = chunk.getZ() << 4;
+        for (int i = 0; i < arr.length; i++) {
+            int p = arr[i] >>> 2;
+            int y = (p >>> 8) << 20 >> 20; // sign-extend the 12-bit y
+            out[i] = ShardedMarkerStore.pack(baseX | (p & 15), y, baseZ | ((p >>> 4) & 15));
+        }
+        return out;
+    }
+
+    /** Loaded chunks take the markers right away; the others get them when they load (never loaded here). */
+    @Override
+    public CompletableFuture<Void> importMarkers(List<ImportChunk> batch) {
+        for (ImportChunk c : batch) {
+            int[] entries = entries(c);
+            World world = Bukkit.getWorld(c.world());
+            if (world != null && world.isChunkLoaded(c.cx(), c.cz())) {
+                Chunk chunk = world.getChunkAt(c.cx(), c.cz());
+                if (pendingMigration != null) migrateChunk(chunk);
+                mergeInto(chunk, entries, true);
+                continue;
+            }
+            Map<Long, int[]> byChunk = pendingImport.computeIfAbsent(c.world(), k -> new HashMap<>());
+            int[] queued = byChunk.get(chunkKey(c.cx(), c.cz()));
+            if (queued != null) {
+                importsWaiting -= queued.length;
+                for (int e : entries) queued = with(queued, e >>> 2, e & 3);
+                entries = queued;
+            }
+            byChunk.put(chunkKey(c.cx(), c.cz()), entries);
+            importsWaiting += entries.length;
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public int importsWaiting() {
+        return importsWaiting;
+    }
+
+    @Override
+    public void chunkLoaded(Chunk chunk) {
+        if (pendingImport.isEmpty()) return;
+        Map<Long, int[]> byChunk = pendingImport.get(chunk.getWorld().getName());
+        if (byChunk == null) return;
+        int[] entries = byChunk.remove(chunkKey(chunk.getX(), chunk.getZ()));
+        if (entries == null) return;
+        if (byChunk.isEmpty()) pendingImport.remove(chunk.getWorld().getName());
+        importsWaiting -= entries.length;
+        if (pendingMigration != null) migrateChunk(chunk);
+        mergeInto(chunk, entries, true);
+    }
+
+    /** Sorted entries of an imported chunk. */
+    private static int[] entries(ImportChunk c) {
+        int[] out = new int[c.placed().size() + c.grown().size()];
+        int[] n = {0};
+        c.placed().forEach(pos -> out[n[0]++] = (positionBits(pos) << 2) | PLACED);
+        c.grown().forEach(pos -> out[n[0]++] = (positionBits(pos) << 2) | GROWN);
+        Arrays.sort(out);
+        return out;
+    }
+
+    /** Chunk data is saved by the server together with the world. */
+    @Override
+    public void flush() { }
+
+    @Override
+    public void close() {
+        if (migrationTask != null) {
+            migrationTask.cancel();
+            migrationTask = null;
+        }
+        if (importsWaiting > 0) {
+            plugin.getLogger().warning(importsWaiting + " imported pumpkin marker(s) were still waiting for their chunks "
+                    + "to load and were dropped; run the import again to restore them.");
+        }
+    }
+
+    /* =========================
+       Packed array helpers
+       ========================= */
+
+    private static int positionBits(int x, int y, int z) {
+        return ((y & 0xFFF) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private static int positionBits(long pos) {
+        return positionBits(ShardedMarkerStore.unpackX(pos), ShardedMarkerStore.unpackY(pos), ShardedMarkerStore.unpackZ(pos));
+    }
+
+    private int[] read(PersistentDataContainer pdc) {
+        int[] arr = pdc.get(key, PersistentDataType.INTEGER_ARRAY);
+        return arr != null ? arr : EMPTY;
+    }
+
+    private void write(PersistentDataContainer pdc, int[] arr) {
+        if (arr.length == 0) pdc.remove(key);
+        else pdc.set(key, PersistentDataType.INTEGER_ARRAY, arr);
+    }
+
+    /** Binary search by position; entries are sorted and the source sits in the two low bits. */
+    private static int find(int[] arr, int position) {
+        int lo = 0, hi = arr.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int p = arr[mid] >>> 2;
+            if (p < position) lo = mid + 1;
+            else if (p > position) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    private void set(Block block, int source) {
+        Chunk chunk = block.getChunk();
+        if (pendingMigration != null) migrateChunk(chunk);
+        PersistentDataContainer pdc = chunk.getPersistentDataContainer();
+        int[] arr = read(pdc);
+        int[] updated = with(arr, positionBits(block.getX(), block.getY(), block.getZ()), source);
+        if (updated != arr) write(pdc, updated);
+    }
+
+    /** @return arr itself when nothing changed, otherwise a new array */
+    private static int[] with(int[] arr, int position, int source) {
+        int i = find(arr, position);
+        int entry = (position << 2) | source;
+        if (i >= 0) {
+            if (source == NONE) {
+                int[] out = new int[arr.length - 1];
+                System.arraycopy(arr, 0, out, 0, i);
+                System.arraycopy(arr, i + 1, out, i, arr.length - i - 1);
+                return out;
+            }
+            if (arr[i] == entry) return arr;
+            int[] out = arr.clone();
+            out[i] = entry;
+            return out;
+        }
+        if (source == NONE) return arr;
+        int at = -(i + 1);
+        int[] out = new int[arr.length + 1];
+        System.arraycopy(arr, 0, out, 0, at);
+        out[at] = entry;
+        System.arraycopy(arr, at, out, at + 1, arr.length - at);
+        return out;
+    }
+
+    /* =========================
+       One-time migration
+       ========================= */
+
+    private static long chunkKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    private void startMigration(File shardDir, File legacyFile, int chunksPerTick) {
+        boolean hasShards = shardDir.isDirectory();
+        boolean hasLegacy = legacyFile.exists();
+        if (!hasShards && !hasLegacy) return;
+
+        doneFile = new File(legacyFile.getParentFile(), "pumpkinblocks.migrated-worlds");
+        if (doneFile.exists()) {
+            try {
+                for (String line : Files.readAllLines(doneFile.toPath(), StandardCharsets.UTF_8)) {
+                    if (!line.isBlank()) doneWorlds.add(line.trim());
+                }
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to read " + doneFile.getName() + ": " + e.getMessage());
+            }
+        }
+
+        // world -> chunk -> (position -> source); later sources override earlier ones
+        Map<String, Map<Long, Map<Integer, Integer>>> collected = new HashMap<>();
+        ShardedMarkerStore.MarkerVisitor collect = (world, pos, placed) -> {
+            int x = ShardedMarkerStore.unpackX(pos), y = ShardedMarkerStore.unpackY(pos), z = ShardedMarkerStore.unpackZ(pos);
+            collected.computeIfAbsent(world, k -> new HashMap<>())
+                    .computeIfAbsent(chunkKey(x >> 4, z >> 4), k -> new HashMap<>())
+                    .put(positionBits(x, y, z), placed ? PLACED : GROWN);
+        };
+        if (hasShards) ShardedMarkerStore.forEachStored(shardDir, plugin.getLogger(), collect);
+        if (hasLegacy) {
+            YamlConfiguration yml = YamlConfiguration.loadConfiguration(legacyFile);
+            for (boolean placed : new boolean[]{true, false}) {
+                for (String k : yml.getStringList(placed ? "placed" : "grown")) {
+                    String[] p = k.split(":");
+                    if (p.length != 4) continue;
+                    try {
+                        collect.visit(p[0], ShardedMarkerStore.pack(Integer.parseInt(p[1]), Integer.parseInt(p[2]), Integer.parseInt(p[3])), placed);
+                    } catch (NumberFormatException ignored) { }
+                }
+            }
+        }
+
+        pendingMigration = new HashMap<>();
+        int chunks = 0, markers = 0;
+        for (Map.Entry<String, Map<Long, Map<Integer, Integer>>> w : collected.entrySet()) {
+            if (doneWorlds.contains(w.getKey())) continue; // migrated on an earlier start
+            Map<Long, int[]> byChunk = new HashMap<>();
+            for (Map.Entry<Long, Map<Integer, Integer>> c : w.getValue().entrySet()) {
+                int[] entries = new int[c.getValue().size()];
+                int n = 0;
+                for (Map.Entry<Integer, Integer> m : c.getValue().entrySet()) entries[n++] = (m.getKey() << 2) | m.getValue();
+                Arrays.sort(entries);
+                byChunk.put(c.getKey(), entries);
+                chunks++;
+                markers += entries.length;
+            }
+            pendingMigration.put(w.getKey(), byChunk);
+        }
+        plugin.getLogger().info("Migrating " + markers + " pumpkin marker(s) into " + chunks + " chunk(s) (chunk storage mode)...");
+
+        migrationTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> migrateSome(chunksPerTick, shardDir, legacyFile), 1L, 1L);
+    }
+
+    private void migrateSome(int budget, File shardDir, File legacyFile) {
+        Iterator<Map.Entry<String, Map<Long, int[]>>> worlds = pendingMigration.entrySet().iterator();
+        while (budget > 0 && worlds.hasNext()) {
+            Map.Entry<String, Map<Long, int[]>> w = worlds.next();
+            World world = Bukkit.getWorld(w.getKey());
+            if (world == null) {
+                plugin.getLogger().warning("World '" + w.getKey() + "' is not loaded; its pumpkin markers will be migrated on a later start.");
+                migrationIncomplete = true;
+                worlds.remove();
+                continue;
+            }
+            Iterator<Map.Entry<Long, int[]>> chunks = w.getValue().entrySet().iterator();
+            while (budget > 0 && chunks.hasNext()) {
+                Map.Entry<Long, int[]> c = chunks.next();
+                chunks.remove();
+                long ck = c.getKey();
+                mergeInto(world.getChunkAt((int) (ck >> 32), (int) ck), c.getValue(), false);
+                budget--;
+            }
+            if (w.getValue().isEmpty()) {
+                worlds.remove();
+                worldDone(w.getKey());
+            }
+        }
+        if (pendingMigration.isEmpty()) finishMigration(shardDir, legacyFile);
+    }
+
+    private void worldDone(String world) {
+        doneWorlds.add(world);
+        try {
+            Files.write(doneFile.toPath(), doneWorlds, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to write " + doneFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /** Migrates the chunk right away if it still has pending entries (called before any access). */
+    private void migrateChunk(Chunk chunk) {
+        Map<Long, int[]> byChunk = pendingMigration.get(chunk.getWorld().getName());
+        if (byChunk == null) return;
+        int[] entries = byChunk.remove(chunkKey(chunk.getX(), chunk.getZ()));
+        if (entries != null) mergeInto(chunk, entries, false);
+    }
+
+    /** @param overwrite false for the migration: data already in the chunk is newer */
+    private void mergeInto(Chunk chunk, int[] entries, boolean overwrite) {
+        PersistentDataContainer pdc = chunk.getPersistentDataContainer();
+        int[] arr = read(pdc);
+        int[] merged = arr;
+        for (int e : entries) {
+            if (!overwrite && find(merged, e >>> 2) >= 0) continue;
+            merged = with(merged, e >>> 2, e & 3);
+        }
+        if (merged != arr) write(pdc, merged);
+    }
+
+    private void finishMigration(File shardDir, File legacyFile) {
+        pendingMigration = null;
+        if (migrationTask != null) {
+            migrationTask.cancel();
+            migrationTask = null;
+        }
+        if (migrationIncomplete) return;
+        doneFile.delete(); // the sources are retired below, nothing left to skip
+        if (shardDir.isDirectory()) shardDir.renameTo(new File(shardDir.getParentFile(), shardDir.getName() + ".migrated"));
+        if (legacyFile.exists()) legacyFile.renameTo(new File(legacyFile.getParentFile(), legacyFile.getName() + ".migrated"));
+        plugin.getLogger().info("Pumpkin markers migrated to chunk storage.");
+    }
+}
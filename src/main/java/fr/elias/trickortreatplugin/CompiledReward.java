@@ -0,0 +1,193 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.Sound;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * A reward section compiled once at load: pumpkin-rewards entries, levels.per-level-win / big-win, win-event,
+ * rewards.&lt;group&gt;.tricks / treats and the boss reward.
+ *
+ * Config shape (all keys optional):
+ *   command: "give %player% cookie 5"   and/or  actions: [...]          (all run, see RewardAction)
+ *   random-commands: [...]              and/or  random-actions: [...]   (one of them picked per run)
+ *   message: "..."
+ *   event: { sound: "minecraft:entity.player.levelup", firework: true,   (boss: sound at top level)
+ *            audience: self|radius|world, radius: 16, firework-mode: particles|entity }   (see EffectsEngine)
+ *
+ * Commands are pre-split around %player%, items/effects and the sound are resolved up front (unknown names are
+ * reported once at load), so running a reward does no config lookups.
+ */
+final class CompiledReward {
+    /** What a running reward hands its work to; both services outlive reloads, so the plugin keeps one instance. */
+    record Services(RewardCommandQueue commands, EffectsEngine effects) { }
+
+    /** rewards.&lt;group&gt; in config.yml. A missing branch is null. */
+    record TrickOrTreat(CompiledReward tricks, CompiledReward treats) { }
+
+    private static final RewardAction[] NO_ACTIONS = new RewardAction[0];
+
+    static final CompiledReward NONE = new CompiledReward(NO_ACTIONS, NO_ACTIONS, null, false, EffectsEngine.NONE);
+
+    private static final String PLAYER = "%player%";
+
+    private final RewardAction[] always;   // command + actions
+    private final RewardAction[] oneOf;    // random-commands + random-actions
+    private final String message;      // null when none
+    private final boolean broadcast;   // message to everyone instead of the player
+    private final EffectsEngine.Effect effect; // sound + firework
+
+    private CompiledReward(RewardAction[] always, RewardAction[] oneOf, String message, boolean broadcast,
+                           EffectsEngine.Effect effect) {
+        this.always = always;
+        this.oneOf = oneOf;
+        this.message = message;
+        this.broadcast = broadcast;
+        this.effect = effect;
+    }
+
+    boolean isEmpty() {
+        return always.length == 0 && oneOf.length == 0 && message == null && effect.isEmpty();
+    }
+
+    /* =========================
+       Running
+       ========================= */
+
+    /** Runs the reward for the player at their location. */
+    void give(Services services, Player player) {
+        give(services, player, player.getLocation());
+    }
+
+    /**
+     * @param services queues the commands, plays the sound and firework
+     * @param player   receives the actions and the message; may be null (only broadcast, sound and firework run)
+     * @param at       where the effect plays
+     */
+    void give(Services services, Player player, Location at) {
+        if (player != null) {
+            for (RewardAction a : always) a.run(player, services);
+            if (oneOf.length > 0) oneOf[ThreadLocalRandom.current().nextInt(oneOf.length)].run(player, services);
+        }
+        if (message != null) {
+            if (broadcast) Bukkit.broadcastMessage(message);
+            else if (player != null) player.sendMessage(message);
+        }
+        services.effects().play(effect, player, at);
+    }
+
+    /** Command text split around %player%; rendering is a single concatenation. */
+    static final class CommandTemplate {
+        private final String[] parts; // literal segments; the name goes between consecutive parts
+        private final int literalLength;
+
+        CommandTemplate(String raw) {
+            List<String> out = new ArrayList<>();
+            int from = 0, at;
+            while ((at = raw.indexOf(PLAYER, from)) >= 0) {
+                out.add(raw.substring(from, at));
+                from = at + PLAYER.length();
+            }
+            out.add(raw.substring(from));
+            this.parts = out.toArray(new String[0]);
+            int len = 0;
+            for (String p : parts) len += p.length();
+            this.literalLength = len;
+        }
+
+        String render(String playerName) {
+            if (parts.length == 1) return parts[0];
+            StringBuilder sb = new StringBuilder(literalLength + (parts.length - 1) * playerName.length());
+            sb.append(parts[0]);
+            for (int i = 1; i < parts.length; i++) sb.append(playerName).append(parts[i]);
+            return sb.toString();
+        }
+    }
+
+    /* =========================
+       Compiling
+       ========================= */
+
+    /**
+     * Compiles a reward from a ConfigurationSection or a map (list entries).
+     * @param where config path used in warnings
+     * @return {@link #NONE} when raw is neither
+     */
+    static CompiledReward compile(Object raw, String where, Logger log) {
+        Map<?, ?> data = asMap(raw);
+        if (data == null) return NONE;
+
+        List<RewardAction> always = new ArrayList<>();
+        Object command = data.get("command");
+        if (command != null && !String.valueOf(command).isEmpty()) {
+            always.add(new RewardAction.RunCommand(new CommandTemplate(String.valueOf(command))));
+        }
+        always.addAll(RewardAction.compileAll(data.get("actions"), where + ".actions", log));
+
+        List<RewardAction> oneOf = new ArrayList<>();
+        if (data.get("random-commands") instanceof List<?> list) {
+            for (Object c : list) {
+                if (c != null && !String.valueOf(c).isEmpty()) oneOf.add(new RewardAction.RunCommand(new CommandTemplate(String.valueOf(c))));
+            }
+        }
+        oneOf.addAll(RewardAction.compileAll(data.get("random-actions"), where + ".random-actions", log));
+
+        Object msg = data.get("message");
+        String message = msg != null && !String.valueOf(msg).isEmpty() ? String.valueOf(msg) : null;
+
+        Map<?, ?> event = asMap(data.get("event"));
+        Object soundName = event != null ? event.get("sound") : data.get("sound");
+        Sound sound = soundName instanceof String s && !s.isEmpty() ? KeyResolver.sound(s, where, log) : null;
+        EffectsEngine.Effect effect = EffectsEngine.compile(sound, event, where + ".event", log);
+
+        return new CompiledReward(always.toArray(NO_ACTIONS), oneOf.toArray(NO_ACTIONS), message, false, effect);
+    }
+
+    /** All entries of a list (pumpkin-rewards); entries that are not sections are skipped. */
+    static CompiledReward[] compileList(List<?> raw, String where, Logger log) {
+        if (raw == null) return new CompiledReward[0];
+        List<CompiledReward> out = new ArrayList<>(raw.size());
+        for (int i = 0; i < raw.size(); i++) {
+            CompiledReward r = compile(raw.get(i), where + "[" + i + "]", log);
+            if (r != NONE) out.add(r);
+        }
+        return out.toArray(new CompiledReward[0]);
+    }
+
+    /** rewards.&lt;group&gt; → tricks/treats, keyed by lower-case group name. */
+    static Map<String, TrickOrTreat> compileGroups(ConfigurationSection rewards, Logger log) {
+        Map<String, TrickOrTreat> out = new HashMap<>();
+        if (rewards == null) return out;
+        for (String group : rewards.getKeys(false)) {
+            ConfigurationSection sec = rewards.getConfigurationSection(group);
+            if (sec == null) continue;
+            String where = "rewards." + group;
+            out.put(group.toLowerCase(Locale.ROOT), new TrickOrTreat(
+                    sec.contains("tricks") ? compile(sec.get("tricks"), where + ".tricks", log) : null,
+                    sec.contains("treats") ? compile(sec.get("treats"), where + ".treats", log) : null));
+        }
+        return out;
+    }
+
+    /** boss-mobs.headless-horseman.reward: the message is broadcast (with &amp; colors), the actions go to the killer. */
+    static CompiledReward compileBoss(ConfigurationSection reward, Logger log) {
+        CompiledReward base = compile(reward, "boss-mobs.headless-horseman.reward", log);
+        String msg = reward != null ? reward.getString("message", "The Headless Horseman has been slain!")
+                : "The Headless Horseman has been slain!";
+        String message = ChatColor.GOLD + ChatColor.translateAlternateColorCodes('&', msg);
+        return new CompiledReward(base.always, base.oneOf, message, true, base.effect);
+    }
+
+    private static Map<?, ?> asMap(Object obj) {
+        if (obj instanceof Map<?, ?> m) return m;
+        if (obj instanceof ConfigurationSection s) return s.getValues(false);
+        return null;
+    }
+}
@@ -0,0 +1,573 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Sound;
+import org.bukkit.block.Biome;
+import org.bukkit.block.Block;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
+import org.bukkit.inventory.EntityEquipment;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.logging.Logger;
+
+/**
+ * config.yml, hauntedmobs.yml and pumpkinhunt.yml compiled into typed, immutable values at load time.
+ * Handlers read record fields; no path lookups happen on event paths. Defaults and clamping match what
+ * the handlers used to apply per read. Compiled on any thread (reload runs it async) and never mutated,
+ * so the plugin publishes a new snapshot by swapping one reference.
+ *
+ * Sections that are only read once to build a service (cooldowns, reward-commands, effects,
+ * group rewards) stay with that service.
+ */
+record ConfigSnapshot(Disguises disguises, Villager villager, HauntedMobs haunted, PumpkinHunt hunt) {
+
+    static ConfigSnapshot compile(FileConfiguration config, FileConfiguration hauntedMobs, FileConfiguration pumpkinHunt, Logger log) {
+        return new ConfigSnapshot(Disguises.compile(config), Villager.compile(hauntedMobs, config),
+                HauntedMobs.compile(hauntedMobs, log), PumpkinHunt.compile(pumpkinHunt, log));
+    }
+
+    /* =========================
+       config.yml: libdisguise
+       ========================= */
+
+    record Disguises(boolean enabled, VillagerTrick villagerTrick, Login login) {
+        static Disguises compile(ConfigurationSection cfg) {
+            return new Disguises(cfg.getBoolean("libdisguise.enabled", false),
+                    new VillagerTrick(cfg.getBoolean("libdisguise.villager-trick.enabled", true),
+                            cfg.getString("libdisguise.villager-trick.mob", "WITCH"),
+                            Math.max(1, cfg.getInt("libdisguise.villager-trick.duration-seconds", 8))),
+                    Login.compile(cfg));
+        }
+    }
+
+    record VillagerTrick(boolean enabled, String mob, int seconds) { }
+
+    /** libdisguise.login; mode is lower case (default, random, group, permission). */
+    record Login(boolean enabled, String mode, String defaultMob, List<String> randomPool, int delayTicks,
+                 boolean persistent, int durationSeconds, boolean undisguiseOnQuit, List<PermissionMob> permissions) {
+        static Login compile(ConfigurationSection cfg) {
+            List<PermissionMob> perms = new ArrayList<>();
+            if (cfg.get("libdisguise.login.permissions") instanceof List<?> l) {
+                for (Object o : l) {
+                    if (o instanceof Map<?, ?> m && m.get("node") instanceof String n && m.get("mob") instanceof String s) {
+                        perms.add(new PermissionMob(n, s));
+                    }
+                }
+            }
+            return new Login(cfg.getBoolean("libdisguise.login.enabled", false),
+                    cfg.getString("libdisguise.login.mode", "default").toLowerCase(Locale.ROOT),
+                    cfg.getString("libdisguise.login.default-mob", "ZOMBIE"),
+                    List.copyOf(cfg.getStringList("libdisguise.login.random-pool")),
+                    Math.max(0, cfg.getInt("libdisguise.login.delay-ticks", 5)),
+                    cfg.getBoolean("libdisguise.login.persistent", true),
+                    Math.max(1, cfg.getInt("libdisguise.login.duration-seconds", 600)),
+                    cfg.getBoolean("libdisguise.login.undisguise-on-quit", true),
+                    List.copyOf(perms));
+        }
+    }
+
+    record PermissionMob(String node, String mob) { }
+
+    /* =========================
+       villager-interaction (hauntedmobs.yml first, then config.yml)
+       ========================= */
+
+    /** Messages are null when configured empty (nothing is sent). treatChance is clamped to 0..1. */
+    record Villager(boolean cancelTrade, String onlyNamed, boolean requireEmptyHand, double treatChance,
+                    String requireEmptyHandMessage, String cooldownMessage, String noRewardMessage) {
+        static Villager compile(ConfigurationSection haunted, ConfigurationSection main) {
+            String p = "villager-interaction.";
+            double treat = haunted.isDouble(p + "treat-chance") ? haunted.getDouble(p + "treat-chance")
+                    : main.isDouble(p + "treat-chance") ? main.getDouble(p + "treat-chance")
+                    : haunted.isInt(p + "treat-chance") ? haunted.getInt(p + "treat-chance")
+                    : main.isInt(p + "treat-chance") ? main.getInt(p + "treat-chance")
+                    : 0.5D;
+            return new Villager(bool(haunted, main, p + "cancel-trade", true),
+                    string(haunted, main, p + "only-named", "").trim(),
+                    bool(haunted, main, p + "require-empty-hand", false),
+                    Math.max(0D, Math.min(1D, treat)),
+                    emptyToNull(string(haunted, main, p + "messages.require-empty-hand", "§cEmpty your hand to trick-or-treat!")),
+                    string(haunted, main, p + "messages.cooldown", "§cYou are on cooldown. Please wait %seconds% seconds."),
+                    emptyToNull(string(haunted, main, p + "messages.no-reward", "§cNo rewards configured.")));
+        }
+
+        private static boolean bool(ConfigurationSection first, ConfigurationSection second, String path, boolean def) {
+            if (first.isBoolean(path)) return first.getBoolean(path);
+            if (second.isBoolean(path)) return second.getBoolean(path);
+            return def;
+        }
+
+        private static String string(ConfigurationSection first, ConfigurationSection second, String path, String def) {
+            if (first.isString(path)) return first.getString(path, def);
+            if (second.isString(path)) return second.getString(path, def);
+            return def;
+        }
+
+        private static String emptyToNull(String s) {
+            return s == null || s.isEmpty() ? null : s;
+        }
+    }
+
+    /* =========================
+       hauntedmobs.yml
+       ========================= */
+
+    /**
+     * rules: the decision table for creature spawns, indexed by type (see SpawnRule); types with nothing
+     * configured have no entry. Never modified after compile. boss is null when
+     * boss-mobs.headless-horseman is missing.
+     */
+    record HauntedMobs(Map<EntityType, SpawnRule> rules, EffectLimits effectLimits, Boss boss,
+                       boolean logSpooky, boolean logJumpScares) {
+        static HauntedMobs compile(FileConfiguration cfg, Logger log) {
+            List<SpookyMob> spooky = new ArrayList<>(); // file order is match order
+            ConfigurationSection sec = cfg.getConfigurationSection("spooky-mobs");
+            if (sec != null) {
+                for (String name : sec.getKeys(false)) {
+                    SpookyMob mob = SpookyMob.compile(sec.getConfigurationSection(name), name, log);
+                    if (mob != null) spooky.add(mob);
+                }
+            }
+            JumpScare scare = JumpScare.compile(cfg, log);
+
+            Map<EntityType, SpawnRule> rules = new EnumMap<>(EntityType.class);
+            for (EntityType type : EntityType.values()) {
+                SpawnRule rule = SpawnRule.build(type, spooky, scare);
+                if (rule != null) rules.put(type, rule);
+            }
+            return new HauntedMobs(rules, EffectLimits.compile(cfg.getConfigurationSection("effect-limits")),
+                    Boss.compile(cfg.getConfigurationSection("boss-mobs.headless-horseman"), log),
+                    cfg.getBoolean("logging.spooky-mobs", false), cfg.getBoolean("logging.jump-scares", false));
+        }
+    }
+
+    /**
+     * effect-limits (see SpawnEffectLimiter); null when disabled. A rate of 0 turns that bucket off.
+     * Rates are configured per minute and kept per second.
+     */
+    record EffectLimits(double chunkPerSecond, int chunkBurst, double playerPerSecond, int playerBurst, double playerRadius) {
+        static EffectLimits compile(ConfigurationSection sec) {
+            if (sec != null && !sec.getBoolean("enabled", true)) return null;
+            double chunkRate = sec != null ? sec.getDouble("chunk.per-minute", 6) : 6;
+            double playerRate = sec != null ? sec.getDouble("player.per-minute", 12) : 12;
+            return new EffectLimits(Math.max(0, chunkRate) / 60.0,
+                    Math.max(1, sec != null ? sec.getInt("chunk.burst", 3) : 3),
+                    Math.max(0, playerRate) / 60.0,
+                    Math.max(1, sec != null ? sec.getInt("player.burst", 4) : 4),
+                    Math.max(1.0, sec != null ? sec.getDouble("player.radius", 32) : 32));
+        }
+    }
+
+    /**
+     * Everything that can happen to one spawning creature type. spooky holds, per SpawnReason ordinal, the
+     * spooky-mobs rules for this type and reason in file order; the first whose world, biome and light match
+     * applies. jumpScare may be null.
+     */
+    record SpawnRule(SpookyMob[][] spooky, JumpScare jumpScare) {
+        private static final SpawnReason[] REASONS = SpawnReason.values();
+        private static final SpookyMob[] NO_MOBS = new SpookyMob[0];
+
+        /** @return the rule that applies at this spot, or null */
+        SpookyMob spooky(SpawnReason reason, Location at) {
+            for (SpookyMob mob : spooky[reason.ordinal()]) {
+                if (mob.matches(at)) return mob;
+            }
+            return null;
+        }
+
+        /** @return null when nothing is configured for type */
+        static SpawnRule build(EntityType type, List<SpookyMob> mobs, JumpScare scare) {
+            SpookyMob[][] byReason = new SpookyMob[REASONS.length][];
+            List<SpookyMob> matching = new ArrayList<>();
+            boolean any = false;
+            for (SpawnReason reason : REASONS) {
+                matching.clear();
+                for (SpookyMob mob : mobs) {
+                    if (mob.types().contains(type) && (mob.reasons() == null || mob.reasons().contains(reason))) {
+                        matching.add(mob);
+                    }
+                }
+                byReason[reason.ordinal()] = matching.isEmpty() ? NO_MOBS : matching.toArray(NO_MOBS);
+                any |= !matching.isEmpty();
+            }
+            JumpScare s = scare != null && scare.types().contains(type) ? scare : null;
+            return any || s != null ? new SpawnRule(byReason, s) : null;
+        }
+    }
+
+    /**
+     * spooky-mobs.&lt;name&gt;: one rule of the spawn table. Matches on types, spawn-reasons, worlds, biomes and
+     * the block light (not sky light) at the spawn spot (light.min / light.max); null sets and the full
+     * 0..15 range match anything. Applies one weighted pick each of equipment, sound and disguise-as (empty when unset).
+     * types defaults to the zombie family for "zombie", otherwise to the entity type called name.
+     */
+    record SpookyMob(String name, Set<EntityType> types, Set<SpawnReason> reasons, Set<String> worlds, Set<Biome> biomes,
+                     int minLight, int maxLight, double spawnChance, Weighted<Equipment> equipment,
+                     Weighted<EffectsEngine.Effect> sounds, Weighted<String> disguises, double disguiseChance,
+                     int disguiseSeconds) {
+        /** @return null (after a warning) when no entity type applies */
+        static SpookyMob compile(ConfigurationSection cfg, String name, Logger log) {
+            String base = "spooky-mobs." + name;
+            if (cfg == null) {
+                log.warning(base + ": expected a section, ignoring it.");
+                return null;
+            }
+            Set<EntityType> types;
+            if (cfg.isList("types")) {
+                types = entityTypes(cfg.getStringList("types"), base + ".types", log);
+            } else if (name.equalsIgnoreCase("zombie")) {
+                // everything that used to be an instanceof Zombie
+                types = EnumSet.of(EntityType.ZOMBIE, EntityType.HUSK, EntityType.DROWNED,
+                        EntityType.ZOMBIE_VILLAGER, EntityType.ZOMBIFIED_PIGLIN);
+            } else {
+                EntityType type = KeyResolver.entityType(name);
+                types = type != null ? EnumSet.of(type) : EnumSet.noneOf(EntityType.class);
+            }
+            if (types.isEmpty()) {
+                log.warning(base + ": no entity type (name the section after one or add types:), ignoring it.");
+                return null;
+            }
+
+            Set<Biome> biomes = null;
+            if (cfg.isList("biomes")) {
+                biomes = new HashSet<>();
+                for (String b : cfg.getStringList("biomes")) {
+                    Biome biome = KeyResolver.biome(b, base + ".biomes", log);
+                    if (biome != null) biomes.add(biome);
+                }
+            }
+
+            Weighted<Equipment> equipment;
+            if (cfg.isList("equipment")) {
+                equipment = weighted(cfg.getList("equipment"), null, base + ".equipment",
+                        (o, where) -> Equipment.compile(o, where, log));
+            } else {
+                // legacy: a single head
+                Material head = KeyResolver.material(cfg.getString("head", "CARVED_PUMPKIN"), base + ".head", log);
+                equipment = Weighted.single(head != null ? new Equipment(new ItemStack(head), null, null, null, null, null) : null);
+            }
+
+            return new SpookyMob(name, types, spawnReasons(cfg, base, log),
+                    cfg.isList("worlds") ? Set.copyOf(cfg.getStringList("worlds")) : null,
+                    biomes != null ? Set.copyOf(biomes) : null,
+                    Math.max(0, Math.min(15, cfg.getInt("light.min", 0))),
+                    Math.max(0, Math.min(15, cfg.getInt("light.max", 15))),
+                    cfg.getDouble("spawn-chance", 0.0),
+                    equipment,
+                    weighted(cfg.contains("sound") ? cfg.get("sound") : "ENTITY_WITHER_SPAWN", "sound", base + ".sound",
+                            (o, where) -> {
+                                Sound sound = KeyResolver.sound(String.valueOf(o), where, log);
+                                return sound != null ? EffectsEngine.sound(sound) : null;
+                            }),
+                    weighted(cfg.get("disguise-as"), "mob", base + ".disguise-as",
+                            (o, where) -> String.valueOf(o).isBlank() ? null : String.valueOf(o).trim()),
+                    cfg.getDouble("disguise-chance", 0.25),
+                    Math.max(1, cfg.getInt("disguise-duration-seconds", 30)));
+        }
+
+        /** World, biome and light; type and spawn reason are settled by the table lookup. */
+        boolean matches(Location at) {
+            if (worlds != null && (at.getWorld() == null || !worlds.contains(at.getWorld().getName()))) return false;
+            boolean lightBound = minLight > 0 || maxLight < 15;
+            if (biomes == null && !lightBound) return true;
+            Block block = at.getBlock();
+            if (biomes != null && !biomes.contains(block.getBiome())) return false;
+            if (!lightBound) return true;
+            int light = block.getLightFromBlocks(); // torches, lava...; sunlight does not count
+            return light >= minLight && light <= maxLight;
+        }
+    }
+
+    /**
+     * One equipment set: { weight, head, chest, legs, feet, main-hand, off-hand } with material names.
+     * Slots left out keep what the mob spawned with. The stacks are prototypes built once at load; the
+     * equipment setters copy them into the entity, so they are shared and never modified.
+     */
+    record Equipment(ItemStack head, ItemStack chest, ItemStack legs, ItemStack feet, ItemStack mainHand, ItemStack offHand) {
+        void apply(EntityEquipment eq) {
+            if (head != null) eq.setHelmet(head);
+            if (chest != null) eq.setChestplate(chest);
+            if (legs != null) eq.setLeggings(legs);
+            if (feet != null) eq.setBoots(feet);
+            if (mainHand != null) eq.setItemInMainHand(mainHand);
+            if (offHand != null) eq.setItemInOffHand(offHand);
+        }
+
+        /** @return null (after a warning) when the entry sets no slot */
+        static Equipment compile(Object raw, String where, Logger log) {
+            if (!(raw instanceof Map<?, ?> m)) {
+                log.warning(where + ": expected { head: ..., chest: ..., ... }, ignoring it.");
+                return null;
+            }
+            Equipment e = new Equipment(item(m, "head", where, log), item(m, "chest", where, log),
+                    item(m, "legs", where, log), item(m, "feet", where, log),
+                    item(m, "main-hand", where, log), item(m, "off-hand", where, log));
+            if (e.head == null && e.chest == null && e.legs == null && e.feet == null && e.mainHand == null && e.offHand == null) {
+                log.warning(where + ": no equipment slot set, ignoring it.");
+                return null;
+            }
+            return e;
+        }
+
+        private static ItemStack item(Map<?, ?> m, String slot, String where, Logger log) {
+            Object name = m.get(slot);
+            if (name == null) return null;
+            Material mat = KeyResolver.material(String.valueOf(name), where + "." + slot, log);
+            return mat != null ? new ItemStack(mat) : null;
+        }
+    }
+
+    /** A weighted choice among compiled options; pick is null when there are none and rolls nothing for one. */
+    record Weighted<T>(List<T> options, int[] cumulative) {
+        static <T> Weighted<T> single(T option) {
+            return option != null ? new Weighted<>(List.of(option), new int[] {1}) : new Weighted<>(List.of(), new int[0]);
+        }
+
+        T pick(Random random) {
+            int n = cumulative.length;
+            if (n <= 1) return n == 0 ? null : options.get(0);
+            int roll = random.nextInt(cumulative[n - 1]);
+            int i = 0;
+            while (cumulative[i] <= roll) i++;
+            return options.get(i);
+        }
+    }
+
+    /**
+     * A value, or a list of values and { &lt;key&gt;: value, weight: n } maps (weight defaults to 1; with a null key
+     * the whole map is the value). compile returns null, after its own warning, to drop an entry.
+     */
+    private static <T> Weighted<T> weighted(Object raw, String key, String where, BiFunction<Object, String, T> compile) {
+        List<?> entries = raw instanceof List<?> l ? l : raw != null ? List.of(raw) : List.of();
+        List<T> options = new ArrayList<>();
+        int[] cumulative = new int[entries.size()];
+        int total = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            Object value = entries.get(i);
+            int weight = 1;
+            if (value instanceof Map<?, ?> m) {
+                if (m.get("weight") instanceof Number w) weight = Math.max(0, Math.min(1_000_000, w.intValue()));
+                if (key != null) value = m.get(key);
+            }
+            T option = weight > 0 && value != null ? compile.apply(value, raw instanceof List<?> ? where + "[" + i + "]" : where) : null;
+            if (option == null) continue;
+            total += weight;
+            cumulative[options.size()] = total;
+            options.add(option);
+        }
+        return new Weighted<>(List.copyOf(options), Arrays.copyOf(cumulative, options.size()));
+    }
+
+    /** jump-scares.ghost-mob; types defaults to every living type, reasons null for any spawn reason. */
+    record JumpScare(Set<EntityType> types, Set<SpawnReason> reasons, double chance, EffectsEngine.Effect sound,
+                     String disguiseAs, int disguiseSeconds) {
+        /** @return null when there is nothing to roll for */
+        static JumpScare compile(ConfigurationSection cfg, Logger log) {
+            String base = "jump-scares.ghost-mob";
+            ConfigurationSection sec = cfg.getConfigurationSection(base);
+            double chance = sec != null ? sec.getDouble("spawn-chance", 0.15) : 0.15;
+            if (chance <= 0) return null;
+            Set<EntityType> types;
+            if (sec != null && sec.isList("types")) {
+                types = entityTypes(sec.getStringList("types"), base + ".types", log);
+            } else {
+                types = EnumSet.noneOf(EntityType.class);
+                for (EntityType type : EntityType.values()) {
+                    if (type.isAlive()) types.add(type);
+                }
+            }
+            String as = sec != null ? sec.getString("disguise-as", null) : null;
+            return new JumpScare(types, sec != null ? spawnReasons(sec, base, log) : null, chance,
+                    EffectsEngine.sound(KeyResolver.sound(sec != null ? sec.getString("sound", "ENTITY_GHAST_SCREAM") : "ENTITY_GHAST_SCREAM",
+                            base + ".sound", log)),
+                    as == null || as.isEmpty() ? null : as,
+                    Math.max(1, sec != null ? sec.getInt("disguise-duration-seconds", 3) : 3));
+        }
+    }
+
+    private static Set<EntityType> entityTypes(List<String> names, String where, Logger log) {
+        Set<EntityType> out = EnumSet.noneOf(EntityType.class);
+        for (String name : names) {
+            EntityType type = KeyResolver.entityType(name, where, log);
+            if (type != null) out.add(type);
+        }
+        return out;
+    }
+
+    /** spawn-reasons: allow-list of CreatureSpawnEvent reasons; null (any reason) when unset. */
+    private static Set<SpawnReason> spawnReasons(ConfigurationSection sec, String base, Logger log) {
+        if (!sec.isList("spawn-reasons")) return null;
+        Set<SpawnReason> out = EnumSet.noneOf(SpawnReason.class);
+        for (String name : sec.getStringList("spawn-reasons")) {
+            try {
+                out.add(SpawnReason.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                log.warning(base + ".spawn-reasons: unknown spawn reason '" + name + "', ignoring it.");
+            }
+        }
+        return out;
+    }
+
+    /**
+     * boss-mobs.headless-horseman. Names and messages are colour-translated; center is null unless
+     * define-spawn-location is on and spawn-location parses (the world is looked up when used).
+     */
+    record Boss(String displayName, String strippedName, String spawnMessage, double spawnChance, double health,
+                long cooldownMs, CompiledReward reward, EffectsEngine.Effect spawnSound, SpawnPoint center,
+                Auto auto, Minions minions) {
+        static Boss compile(ConfigurationSection sec, Logger log) {
+            if (sec == null) return null;
+            String name = ChatColor.translateAlternateColorCodes('&', sec.getString("display-name", "&cHeadless Horseman"));
+            return new Boss(name, ChatColor.stripColor(name),
+                    ChatColor.translateAlternateColorCodes('&', sec.getString("message-on-spawn", "&aThe Headless Horseman rides again!")),
+                    sec.getDouble("spawn-chance", 1.0),
+                    sec.getDouble("health", 150.0),
+                    sec.getLong("cooldown-of-spawn-after-death", 3600) * 1000L,
+                    CompiledReward.compileBoss(sec.getConfigurationSection("reward"), log),
+                    EffectsEngine.sound(KeyResolver.sound(sec.getString("sound", "entity_lightning_bolt_thunder"),
+                            "boss-mobs.headless-horseman.sound", log)),
+                    sec.getBoolean("define-spawn-location", false)
+                            ? SpawnPoint.parse(sec.getString("spawn-location", "world,0,64,0")) : null,
+                    Auto.compile(sec.getConfigurationSection("auto")),
+                    Minions.compile(sec, log));
+        }
+    }
+
+    record SpawnPoint(String world, double x, double y, double z) {
+        /** "world,x,y,z"; null when malformed. */
+        static SpawnPoint parse(String raw) {
+            String[] p = raw.split(",");
+            if (p.length < 4) return null;
+            try {
+                return new SpawnPoint(p[0], Double.parseDouble(p[1]), Double.parseDouble(p[2]), Double.parseDouble(p[3]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /** auto; a missing section is a disabled one. forceChunk: keep the chunk loaded while the boss lives. */
+    record Auto(boolean enabled, long intervalSeconds, int regionRadius, long timeFrom, long timeTo,
+                boolean requirePlayerNearby, boolean forceChunk) {
+        static Auto compile(ConfigurationSection auto) {
+            if (auto == null) return new Auto(false, 60, 96, 0, 23999, true, false);
+            boolean requireNearby = auto.getBoolean("require-player-nearby", true);
+            return new Auto(auto.getBoolean("enabled", false),
+                    Math.max(5, auto.getLong("interval-seconds", 60)),
+                    Math.max(1, auto.getInt("region-radius", 96)),
+                    auto.getLong("world-time.from", 0),
+                    auto.getLong("world-time.to", 23999),
+                    requireNearby,
+                    // spawning with no players near only works with the chunk forced
+                    auto.getBoolean("force-load-chunk", false) || !requireNearby);
+        }
+    }
+
+    /** minions; types are upper-cased and validated (BABY_ZOMBIE, BABY_HUSK or an entity type). */
+    record Minions(boolean enabled, int intervalTicks, int perWave, int maxAlive, double targetRadius,
+                   List<String> types, boolean despawnOnBossDeath) {
+        static Minions compile(ConfigurationSection boss, Logger log) {
+            int perWave = Math.max(1, boss.getInt("minions.count-per-wave", 3));
+            List<String> types = new ArrayList<>();
+            for (String name : boss.getStringList("minions.types")) {
+                String upper = name.trim().toUpperCase(Locale.ROOT);
+                if (upper.equals("BABY_ZOMBIE") || upper.equals("BABY_HUSK")
+                        || KeyResolver.entityType(name, "boss-mobs.headless-horseman.minions.types", log) != null) {
+                    types.add(upper);
+                }
+            }
+            return new Minions(boss.getBoolean("minions.enabled", true),
+                    Math.max(20, boss.getInt("minions.interval-ticks", 200)),
+                    perWave,
+                    Math.max(perWave, boss.getInt("minions.max-alive", 10)),
+                    Math.max(8.0, boss.getDouble("minions.target-radius", 24.0)),
+                    List.copyOf(types),
+                    boss.getBoolean("minions.despawn-on-boss-death", true));
+        }
+    }
+
+    /* =========================
+       pumpkinhunt.yml
+       ========================= */
+
+    /** breakRewards is never modified after compile. storage is read once, when the stores are built. */
+    record PumpkinHunt(boolean countPlaced, boolean countGrown, boolean countNatural,
+                       boolean levelsEnabled, LevelCurve levelCurve,
+                       CompiledReward[] breakRewards, CompiledReward perLevelWin, CompiledReward bigWin,
+                       CompiledReward winEvent, Storage storage) {
+        static PumpkinHunt compile(FileConfiguration cfg, Logger log) {
+            int legacyTarget = Math.max(1, cfg.getInt("total-pumpkins", 10));
+            boolean levelsEnabled = cfg.getBoolean("levels.enabled", false);
+            return new PumpkinHunt(cfg.getBoolean("rules.count-player-placed", false),
+                    cfg.getBoolean("rules.count-grown", true),
+                    cfg.getBoolean("rules.count-natural", true),
+                    levelsEnabled,
+                    levelsEnabled
+                            ? LevelCurve.compile(cfg.getConfigurationSection("levels"), legacyTarget, log)
+                            : LevelCurve.single(legacyTarget),
+                    CompiledReward.compileList(cfg.getList("pumpkin-rewards"), "pumpkin-rewards", log),
+                    CompiledReward.compile(cfg.getConfigurationSection("levels.per-level-win"), "levels.per-level-win", log),
+                    CompiledReward.compile(cfg.getConfigurationSection("levels.big-win"), "levels.big-win", log),
+                    CompiledReward.compile(cfg.getConfigurationSection("win-event"), "win-event", log),
+                    Storage.compile(cfg.getConfigurationSection("storage")));
+        }
+    }
+
+    record Storage(ProgressStorage progress, MarkerStorage markers) {
+        static Storage compile(ConfigurationSection sec) {
+            return new Storage(ProgressStorage.compile(sec != null ? sec.getConfigurationSection("progress") : null),
+                    MarkerStorage.compile(sec != null ? sec.getConfigurationSection("markers") : null));
+        }
+    }
+
+    /** storage.progress; format is lower case (yaml, binary, sqlite; anything else falls back to yaml). */
+    record ProgressStorage(String format, long flushIntervalSeconds, int flushThreshold, long residentGraceSeconds,
+                           int residentMax) {
+        static ProgressStorage compile(ConfigurationSection sec) {
+            return new ProgressStorage(
+                    (sec != null ? sec.getString("format", "yaml") : "yaml").trim().toLowerCase(Locale.ROOT),
+                    Math.max(1, sec != null ? sec.getLong("flush-interval-seconds", 30) : 30),
+                    Math.max(1, sec != null ? sec.getInt("flush-threshold", 200) : 200),
+                    Math.max(0, sec != null ? sec.getLong("resident-grace-seconds", 300) : 300),
+                    Math.max(1, sec != null ? sec.getInt("resident-max", 2000) : 2000));
+        }
+    }
+
+    /** storage.markers; chunkMode is mode: chunk (otherwise files). */
+    record MarkerStorage(boolean chunkMode, long journalFlushTicks, long maintenanceSeconds, int compactAfterOps,
+                         int migrationChunksPerTick, Sweep sweep) {
+        static MarkerStorage compile(ConfigurationSection sec) {
+            return new MarkerStorage(sec != null && "chunk".equalsIgnoreCase(sec.getString("mode", "files")),
+                    Math.max(1, sec != null ? sec.getLong("journal-flush-ticks", 20) : 20),
+                    Math.max(5, sec != null ? sec.getLong("maintenance-seconds", 60) : 60),
+                    Math.max(64, sec != null ? sec.getInt("compact-after-ops", 4096) : 4096),
+                    Math.max(1, sec != null ? sec.getInt("migration-chunks-per-tick", 4) : 4),
+                    Sweep.compile(sec != null ? sec.getConfigurationSection("sweep") : null));
+        }
+    }
+
+    /** storage.markers.sweep */
+    record Sweep(boolean enabled, int markersPerTick, long cyclePauseSeconds) {
+        static Sweep compile(ConfigurationSection sec) {
+            return new Sweep(sec == null || sec.getBoolean("enabled", true),
+                    Math.max(1, sec != null ? sec.getInt("markers-per-tick", 64) : 64),
+                    Math.max(1, sec != null ? sec.getLong("cycle-pause-seconds", 300) : 300));
+        }
+    }
+}
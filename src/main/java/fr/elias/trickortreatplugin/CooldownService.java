@@ -0,0 +1,349 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player cooldowns, one independent {@link Namespace} per activity ("pumpkin", "villager", "boss-spawn").
+ *
+ * Each namespace stores expiry times (epoch ms) in a striped primitive table: no boxed Long, no entry objects,
+ * and {@link Namespace#remainingMillis} is a lock-striped probe, cheap enough for placeholders on any thread.
+ * Expired entries are removed by a hashed timing wheel (one slot per second, advanced by a sync task),
+ * so the tables only hold players that are actually cooling down.
+ *
+ * With cooldowns.persist: true, running cooldowns are written to cooldowns.bin on disable and restored on enable.
+ * Owned by the plugin: a reload keeps every running cooldown.
+ */
+final class CooldownService {
+    private static final int WHEEL_SLOTS = 512;           // power of two
+    private static final long SLOT_MS = 1000L;
+    private static final int FILE_MAGIC = 0x5454434C;     // "TTCL"
+
+    private final TrickOrTreatPlugin plugin;
+    private final File file;
+    private final Map<String, Namespace> namespaces = new ConcurrentHashMap<>();
+
+    // timing wheel: slot i holds entries expiring in the second (slotTick & mask) == i, possibly a few rounds ahead
+    @SuppressWarnings("unchecked")
+    private final List<WheelEntry>[] wheel = new List[WHEEL_SLOTS];
+    private long wheelTick;                               // next second to process (epoch ms / SLOT_MS)
+    private final BukkitTask task;
+
+    private record WheelEntry(Namespace ns, long msb, long lsb, long expiresAt) { }
+
+    CooldownService(TrickOrTreatPlugin plugin, ConfigurationSection cfg) {
+        this.plugin = plugin;
+        this.file = cfg != null && cfg.getBoolean("persist", false) ? new File(plugin.getDataFolder(), "cooldowns.bin") : null;
+        for (int i = 0; i < WHEEL_SLOTS; i++) wheel[i] = new ArrayList<>();
+        this.wheelTick = System.currentTimeMillis() / SLOT_MS;
+        if (file != null) load();
+        this.task = Bukkit.getScheduler().runTaskTimer(plugin, this::advance, 20L, 20L);
+    }
+
+    /** The namespace with this name, created on first use. */
+    Namespace namespace(String name) {
+        return namespaces.computeIfAbsent(name, Namespace::new);
+    }
+
+    /** Saves running cooldowns (when persistence is on) and stops the wheel. */
+    void close() {
+        task.cancel();
+        if (file != null) save();
+    }
+
+    /** One activity's cooldowns. Thread-safe. */
+    final class Namespace {
+        private final String name;
+        private final ExpiryTable table = new ExpiryTable();
+
+        private Namespace(String name) {
+            this.name = name;
+        }
+
+        /** Milliseconds left, 0 when the player is free. */
+        long remainingMillis(UUID id) {
+            long left = table.get(id.getMostSignificantBits(), id.getLeastSignificantBits()) - System.currentTimeMillis();
+            return Math.max(0L, left);
+        }
+
+        /**
+         * Starts the cooldown if the player is free.
+         * @return 0 when it was started, otherwise the milliseconds left on the running one
+         */
+        long tryAcquire(UUID id, long durationMs) {
+            if (durationMs <= 0) return 0L;
+            long now = System.currentTimeMillis();
+            long msb = id.getMostSignificantBits(), lsb = id.getLeastSignificantBits();
+            long left = table.putIfExpired(msb, lsb, now, now + durationMs);
+            if (left > 0) return left;
+            schedule(this, msb, lsb, now + durationMs);
+            return 0L;
+        }
+
+        void clear(UUID id) {
+            table.remove(id.getMostSignificantBits(), id.getLeastSignificantBits(), Long.MAX_VALUE);
+        }
+
+        int size() {
+            return table.size();
+        }
+    }
+
+    /* =========================
+       Timing wheel
+       ========================= */
+
+    private synchronized void schedule(Namespace ns, long msb, long lsb, long expiresAt) {
+        long tick = Math.max(expiresAt / SLOT_MS + 1, wheelTick); // first second fully after the expiry
+        wheel[(int) (tick & (WHEEL_SLOTS - 1))].add(new WheelEntry(ns, msb, lsb, expiresAt));
+    }
+
+    /** Processes every second up to now (catches up after a lag spike). */
+    private void advance() {
+        long now = System.currentTimeMillis();
+        long target = now / SLOT_MS;
+        List<WheelEntry> later = new ArrayList<>();
+        synchronized (this) {
+            for (; wheelTick <= target; wheelTick++) {
+                List<WheelEntry> slot = wheel[(int) (wheelTick & (WHEEL_SLOTS - 1))];
+                if (slot.isEmpty()) continue;
+                for (WheelEntry e : slot) {
+                    if (e.expiresAt() <= now) {
+                        e.ns().table.remove(e.msb(), e.lsb(), e.expiresAt()); // no-op if re-armed since
+                    } else {
+                        later.add(e); // more rounds to go
+                    }
+                }
+                slot.clear();
+            }
+            for (WheelEntry e : later) {
+                long tick = e.expiresAt() / SLOT_MS + 1;
+                wheel[(int) (tick & (WHEEL_SLOTS - 1))].add(e);
+            }
+        }
+    }
+
+    /* =========================
+       Persistence
+       ========================= */
+
+    /** Format: magic, namespace count, then per namespace: name, entry count, (msb, lsb, expiresAt)*. */
+    private void save() {
+        long now = System.currentTimeMillis();
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(namespaces.size());
+            for (Namespace ns : namespaces.values()) {
+                out.writeUTF(ns.name);
+                long[] entries = ns.table.snapshot(now);
+                out.writeInt(entries.length / 3);
+                for (long v : entries) out.writeLong(v);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not save cooldowns: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not save cooldowns: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (!file.isFile()) return;
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) throw new IOException("not a cooldown file");
+            int nsCount = in.readInt();
+            for (int n = 0; n < nsCount; n++) {
+                Namespace ns = namespace(in.readUTF());
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    long msb = in.readLong(), lsb = in.readLong(), expiresAt = in.readLong();
+                    if (expiresAt <= now) continue;
+                    ns.table.putIfExpired(msb, lsb, now, expiresAt);
+                    schedule(ns, msb, lsb, expiresAt);
+                    restored++;
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not read cooldowns.bin (" + e.getMessage() + "); starting without saved cooldowns.");
+            return;
+        }
+        if (restored > 0) plugin.getLogger().info("Restored " + restored + " running cooldown(s).");
+    }
+
+    /* =========================
+       Primitive storage
+       ========================= */
+
+    /**
+     * UUID -> expiry (epoch ms), split into 16 independently locked open-addressing tables.
+     * Each slot is three longs (msb, lsb, expiresAt); expiresAt 0 marks an empty slot.
+     */
+    private static final class ExpiryTable {
+        private static final int STRIPES = 16;
+        private final Stripe[] stripes = new Stripe[STRIPES];
+
+        ExpiryTable() {
+            for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe();
+        }
+
+        private static int hash(long msb, long lsb) {
+            long h = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        private Stripe stripe(int h) {
+            return stripes[h >>> 28];
+        }
+
+        long get(long msb, long lsb) {
+            int h = hash(msb, lsb);
+            Stripe s = stripe(h);
+            synchronized (s) {
+                int i = s.find(msb, lsb, h);
+                return i >= 0 ? s.slots[i + 2] : 0L;
+            }
+        }
+
+        /** @return 0 when stored, otherwise the time left on the current (unexpired) entry */
+        long putIfExpired(long msb, long lsb, long now, long expiresAt) {
+            int h = hash(msb, lsb);
+            Stripe s = stripe(h);
+            synchronized (s) {
+                int i = s.find(msb, lsb, h);
+                if (i >= 0) {
+                    long left = s.slots[i + 2] - now;
+                    if (left > 0) return left;
+                    s.slots[i + 2] = expiresAt;
+                    return 0L;
+                }
+                s.insert(msb, lsb, expiresAt, h);
+                return 0L;
+            }
+        }
+
+        /** Removes the entry if its expiry is at most the given one (a re-armed cooldown stays). */
+        void remove(long msb, long lsb, long expiresAtOrBefore) {
+            int h = hash(msb, lsb);
+            Stripe s = stripe(h);
+            synchronized (s) {
+                int i = s.find(msb, lsb, h);
+                if (i >= 0 && s.slots[i + 2] <= expiresAtOrBefore) s.delete(i);
+            }
+        }
+
+        int size() {
+            int n = 0;
+            for (Stripe s : stripes) {
+                synchronized (s) {
+                    n += s.size;
+                }
+            }
+            return n;
+        }
+
+        /** (msb, lsb, expiresAt) triples of the entries still running. */
+        long[] snapshot(long now) {
+            List<long[]> parts = new ArrayList<>();
+            int total = 0;
+            for (Stripe s : stripes) {
+                synchronized (s) {
+                    long[] part = new long[s.size * 3];
+                    int n = 0;
+                    for (int i = 0; i < s.slots.length; i += 3) {
+                        if (s.slots[i + 2] > now) {
+                            part[n++] = s.slots[i];
+                            part[n++] = s.slots[i + 1];
+                            part[n++] = s.slots[i + 2];
+                        }
+                    }
+                    parts.add(java.util.Arrays.copyOf(part, n));
+                    total += n;
+                }
+            }
+            long[] out = new long[total];
+            int at = 0;
+            for (long[] p : parts) {
+                System.arraycopy(p, 0, out, at, p.length);
+                at += p.length;
+            }
+            return out;
+        }
+
+        /** Linear probing over slot triples, backward-shift delete (no tombstones). */
+        private static final class Stripe {
+            long[] slots = new long[16 * 3];
+            int capacity = 16;   // power of two
+            int size;
+
+            private int home(int h) {
+                return (h & (capacity - 1)) * 3;
+            }
+
+            int find(long msb, long lsb, int h) {
+                int i = home(h);
+                while (slots[i + 2] != 0L) {
+                    if (slots[i] == msb && slots[i + 1] == lsb) return i;
+                    i = (i + 3) % slots.length;
+                }
+                return -1;
+            }
+
+            void insert(long msb, long lsb, long expiresAt, int h) {
+                if ((size + 1) * 4 > capacity * 3) grow();
+                int i = home(h);
+                while (slots[i + 2] != 0L) i = (i + 3) % slots.length;
+                slots[i] = msb;
+                slots[i + 1] = lsb;
+                slots[i + 2] = expiresAt;
+                size++;
+            }
+
+            void delete(int i) {
+                int len = slots.length;
+                int hole = i;
+                int j = i;
+                while (true) {
+                    j = (j + 3) % len;
+                    if (slots[j + 2] == 0L) break;
+                    int home = home(hash(slots[j], slots[j + 1]));
+                    // move j into the hole unless its home lies cyclically in (hole, j]
+                    boolean stays = hole <= j ? (hole < home && home <= j) : (hole < home || home <= j);
+                    if (!stays) {
+                        slots[hole] = slots[j];
+                        slots[hole + 1] = slots[j + 1];
+                        slots[hole + 2] = slots[j + 2];
+                        hole = j;
+                    }
+                }
+                slots[hole] = slots[hole + 1] = slots[hole + 2] = 0L;
+                size--;
+            }
+
+            private void grow() {
+                long[] old = slots;
+                capacity <<= 1;
+                slots = new long[capacity * 3];
+                size = 0;
+                for (int i = 0; i < old.length; i += 3) {
+                    if (old[i + 2] != 0L) insert(old[i], old[i + 1], old[i + 2], hash(old[i], old[i + 1]));
+                }
+            }
+        }
+    }
+}
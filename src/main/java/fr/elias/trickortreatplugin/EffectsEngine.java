@@ -0,0 +1,191 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Firework;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Plays reward / mob / boss effects (a sound and optionally a firework) for a chosen audience:
+ * - self:   only the player concerned
+ * - radius: players within radius blocks of the spot
+ * - world:  every player in the world, each hearing the sound at their own position
+ *
+ * Fireworks render as a particle burst sent to the same audience (no entity) unless firework-mode is "entity".
+ * Identical effects in the same area (cell-size blocks) within coalesce-window-ms are played once.
+ * Defaults come from the effects section of config.yml. Main thread only; owned by the plugin.
+ */
+final class EffectsEngine {
+    enum Audience { SELF, RADIUS, WORLD }
+
+    enum FireworkMode { PARTICLES, ENTITY }
+
+    /**
+     * A compiled effect; null fields fall back to the engine defaults when played.
+     * Records compare by value, so the same effect configured in two places still coalesces.
+     */
+    record Effect(Sound sound, boolean firework, Audience audience, double radius, FireworkMode fireworkMode) {
+        boolean isEmpty() {
+            return sound == null && !firework;
+        }
+    }
+
+    static final Effect NONE = new Effect(null, false, null, 0, null);
+
+    private record Key(Effect effect, UUID world, int cx, int cy, int cz, UUID self) { }
+
+    private final Map<Key, Long> recent = new HashMap<>(); // key -> nanoTime it was played
+    private Audience defaultAudience;
+    private double defaultRadius;
+    private FireworkMode defaultFireworkMode;
+    private long windowNanos;
+    private int cellSize;
+    private long coalesced;
+
+    EffectsEngine(ConfigurationSection cfg, Logger log) {
+        configure(cfg, log);
+    }
+
+    /** effects section of config.yml (re-read on reload). */
+    void configure(ConfigurationSection cfg, Logger log) {
+        Audience a = cfg != null ? parseAudience(cfg.getString("default-audience"), "effects.default-audience", log) : null;
+        FireworkMode m = cfg != null ? parseFireworkMode(cfg.getString("firework-mode"), "effects.firework-mode", log) : null;
+        this.defaultAudience = a != null ? a : Audience.RADIUS;
+        this.defaultRadius = Math.max(1.0, cfg != null ? cfg.getDouble("radius", 16.0) : 16.0);
+        this.defaultFireworkMode = m != null ? m : FireworkMode.PARTICLES;
+        this.windowNanos = Math.max(0L, cfg != null ? cfg.getLong("coalesce-window-ms", 250) : 250) * 1_000_000L;
+        this.cellSize = Math.max(1, cfg != null ? cfg.getInt("coalesce-cell-size", 4) : 4);
+        recent.clear();
+    }
+
+    /** Effects skipped because an identical one had just played nearby. */
+    long coalescedCount() {
+        return coalesced;
+    }
+
+    /* =========================
+       Playing
+       ========================= */
+
+    /**
+     * @param self the player concerned (required for the self audience, otherwise may be null)
+     * @param at   where the effect happens
+     */
+    void play(Effect effect, Player self, Location at) {
+        if (effect == null || effect.isEmpty() || at == null) return;
+        World world = at.getWorld();
+        if (world == null) return;
+        Audience audience = effect.audience() != null ? effect.audience() : defaultAudience;
+        if (audience == Audience.SELF && self == null) return;
+
+        if (windowNanos > 0 && coalesce(effect, world, at, audience == Audience.SELF ? self.getUniqueId() : null)) {
+            coalesced++;
+            return;
+        }
+
+        FireworkMode mode = effect.fireworkMode() != null ? effect.fireworkMode() : defaultFireworkMode;
+        if (effect.firework() && mode == FireworkMode.ENTITY) {
+            world.spawn(at, Firework.class); // an entity is seen by everyone around it
+        }
+        boolean particles = effect.firework() && mode == FireworkMode.PARTICLES;
+        Location burst = particles ? at.clone().add(0, 1.5, 0) : null;
+
+        switch (audience) {
+            case SELF:
+                emit(self, effect.sound(), at, burst);
+                break;
+            case RADIUS: {
+                double r = effect.radius() > 0 ? effect.radius() : defaultRadius;
+                double r2 = r * r;
+                for (Player p : world.getPlayers()) {
+                    if (p.getLocation().distanceSquared(at) <= r2) emit(p, effect.sound(), at, burst);
+                }
+                break;
+            }
+            case WORLD:
+                for (Player p : world.getPlayers()) emit(p, effect.sound(), p.getLocation(), burst);
+                break;
+        }
+    }
+
+    private static void emit(Player p, Sound sound, Location soundAt, Location burst) {
+        if (sound != null) p.playSound(soundAt, sound, 1.0F, 1.0F);
+        if (burst != null) {
+            p.spawnParticle(Particle.FIREWORK, burst, 40, 0.4, 0.4, 0.4, 0.15);
+            p.spawnParticle(Particle.FLASH, burst, 1, 0, 0, 0, 0);
+            p.playSound(burst, Sound.ENTITY_FIREWORK_ROCKET_BLAST, 1.0F, 1.0F);
+        }
+    }
+
+    /** @return true when the same effect already played in this cell within the window */
+    private boolean coalesce(Effect effect, World world, Location at, UUID self) {
+        long now = System.nanoTime();
+        Key key = new Key(effect, world.getUID(),
+                Math.floorDiv(at.getBlockX(), cellSize), Math.floorDiv(at.getBlockY(), cellSize),
+                Math.floorDiv(at.getBlockZ(), cellSize), self);
+        Long last = recent.get(key);
+        if (last != null && now - last < windowNanos) return true;
+        if (recent.size() >= 256) prune(now);
+        recent.put(key, now);
+        return false;
+    }
+
+    private void prune(long now) {
+        for (Iterator<Long> it = recent.values().iterator(); it.hasNext(); ) {
+            if (now - it.next() >= windowNanos) it.remove();
+        }
+    }
+
+    /* =========================
+       Compiling
+       ========================= */
+
+    /** A sound with the default audience (mob and boss sounds). */
+    static Effect sound(Sound sound) {
+        return sound == null ? NONE : new Effect(sound, false, null, 0, null);
+    }
+
+    /**
+     * From an event section: { sound, firework, audience: self|radius|world, radius, firework-mode: particles|entity }.
+     * @param sound already resolved (where the sound key lives differs per config)
+     */
+    static Effect compile(Sound sound, Map<?, ?> event, String where, Logger log) {
+        if (event == null) return sound(sound);
+        boolean firework = Boolean.TRUE.equals(event.get("firework"));
+        Object radius = event.get("radius");
+        return new Effect(sound, firework,
+                parseAudience(event.get("audience"), where + ".audience", log),
+                radius instanceof Number n ? n.doubleValue() : 0,
+                parseFireworkMode(event.get("firework-mode"), where + ".firework-mode", log));
+    }
+
+    private static Audience parseAudience(Object raw, String where, Logger log) {
+        if (raw == null) return null;
+        try {
+            return Audience.valueOf(String.valueOf(raw).trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.warning(where + ": unknown audience '" + raw + "' (self, radius, world), using the default.");
+            return null;
+        }
+    }
+
+    private static FireworkMode parseFireworkMode(Object raw, String where, Logger log) {
+        if (raw == null) return null;
+        try {
+            return FireworkMode.valueOf(String.valueOf(raw).trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            log.warning(where + ": unknown firework-mode '" + raw + "' (particles, entity), using the default.");
+            return null;
+        }
+    }
+}
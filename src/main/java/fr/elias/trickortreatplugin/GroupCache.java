@@ -0,0 +1,150 @@
+package fr.elias.trickortreatplugin;
+
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import net.luckperms.api.model.user.User;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Each player's LuckPerms primary group, resolved once and cached together with everything config.yml attaches to it:
+ * the cooldown (custom-cooldowns), the compiled rewards (rewards.&lt;group&gt;) and the login disguise
+ * (libdisguise.login.groups). Hot paths do a single map read.
+ *
+ * Entries are dropped when LuckPerms recalculates the user (group change, parent edit) and on quit.
+ * Without LuckPerms every player is in "default". Owned by the plugin; a reload compiles a new {@link Table}
+ * off the main thread and {@link #apply installs} it.
+ */
+final class GroupCache implements Listener {
+    /** What a group gets; shared by every player in that group. */
+    record GroupProfile(String group, long cooldownSeconds, CompiledReward.TrickOrTreat rewards, String loginMob) { }
+
+    private static final String DEFAULT = "default";
+
+    private final TrickOrTreatPlugin plugin;
+    private final Map<UUID, GroupProfile> byPlayer = new ConcurrentHashMap<>();
+    private AutoCloseable subscription; // LuckPerms EventSubscription, null without LuckPerms
+    private volatile Table table;
+
+    GroupCache(TrickOrTreatPlugin plugin) {
+        this.plugin = plugin;
+        if (plugin.getServer().getPluginManager().getPlugin("LuckPerms") != null) {
+            try {
+                subscription = LuckPermsProvider.get().getEventBus()
+                        .subscribe(plugin, UserDataRecalculateEvent.class, e -> byPlayer.remove(e.getUser().getUniqueId()));
+            } catch (Throwable t) {
+                plugin.getLogger().warning("Could not listen to LuckPerms group changes (" + t.getMessage()
+                        + "); group-based settings refresh on rejoin only.");
+            }
+        }
+    }
+
+    /** Any thread: compiles every group from config.yml, ready for {@link #apply}. */
+    static Table compile(FileConfiguration cfg, Logger log) {
+        Table t = new Table(cfg, CompiledReward.compileGroups(cfg.getConfigurationSection("rewards"), log),
+                cfg.getBoolean("reward-per-luckpermsgroups", true), new ConcurrentHashMap<>());
+        for (String path : new String[]{"custom-cooldowns", "rewards", "libdisguise.login.groups"}) {
+            ConfigurationSection sec = cfg.getConfigurationSection(path);
+            if (sec == null) continue;
+            for (String group : sec.getKeys(false)) t.profile(group.toLowerCase(Locale.ROOT));
+        }
+        t.profile(DEFAULT);
+        return t;
+    }
+
+    /** Installs a compiled table and forgets all resolved players. */
+    void apply(Table table) {
+        this.table = table;
+        byPlayer.clear();
+    }
+
+    /** Main thread or async; a map read once the player has been resolved. */
+    GroupProfile profile(Player player) {
+        GroupProfile p = byPlayer.get(player.getUniqueId());
+        if (p == null) {
+            Table t = table;
+            p = t.profile(primaryGroup(player));
+            byPlayer.put(player.getUniqueId(), p);
+            if (t != table) byPlayer.remove(player.getUniqueId()); // raced with apply: resolve again next time
+        }
+        return p;
+    }
+
+    void close() {
+        if (subscription != null) {
+            try {
+                subscription.close();
+            } catch (Exception ignored) { }
+            subscription = null;
+        }
+        byPlayer.clear();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        byPlayer.remove(event.getPlayer().getUniqueId());
+    }
+
+    /* =========================
+       Resolution
+       ========================= */
+
+    /**
+     * One config.yml load. Groups without their own entries get a derived profile on first use,
+     * so byGroup stays concurrent; the configuration is only read.
+     */
+    record Table(FileConfiguration cfg, Map<String, CompiledReward.TrickOrTreat> rewards, boolean rewardsPerGroup,
+                 Map<String, GroupProfile> byGroup) {
+
+        GroupProfile profile(String group) {
+            GroupProfile p = byGroup.get(group);
+            return p != null ? p : byGroup.computeIfAbsent(group, this::build);
+        }
+
+        private GroupProfile build(String group) {
+            String own = path("custom-cooldowns", group), fallback = path("custom-cooldowns", DEFAULT);
+            long cooldown;
+            if (own != null) cooldown = cfg.getLong(own);
+            else if (fallback != null) cooldown = cfg.getLong(fallback);
+            else cooldown = cfg.getLong("default-cooldown", 60);
+
+            CompiledReward.TrickOrTreat reward = rewardsPerGroup ? rewards.get(group) : null;
+            if (reward == null) reward = rewards.get(DEFAULT);
+
+            own = path("libdisguise.login.groups", group);
+            fallback = path("libdisguise.login.groups", DEFAULT);
+            String mob = own != null ? cfg.getString(own) : fallback != null ? cfg.getString(fallback) : null;
+            return new GroupProfile(group, cooldown, reward, mob);
+        }
+
+        /** parent.&lt;key&gt; for the key matching group case-insensitively, or null (LuckPerms group names are lower case). */
+        private String path(String parent, String group) {
+            ConfigurationSection sec = cfg.getConfigurationSection(parent);
+            if (sec == null) return null;
+            for (String key : sec.getKeys(false)) {
+                if (key.equalsIgnoreCase(group) && sec.isSet(key)) return parent + "." + key;
+            }
+            return null;
+        }
+    }
+
+    private static String primaryGroup(Player player) {
+        try {
+            User u = LuckPermsProvider.get().getUserManager().getUser(player.getUniqueId());
+            return (u != null && u.getPrimaryGroup() != null) ? u.getPrimaryGroup().toLowerCase(Locale.ROOT) : DEFAULT;
+        } catch (Throwable ignored) { // LuckPerms missing or not loaded yet
+            return DEFAULT;
+        }
+    }
+}
@@ -0,0 +1,599 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * /tt data export|import: streams pumpkin progress and block markers to and from CSV or NDJSON.
+ *
+ * Files live in plugins/TrickOrTreat/data/. Everything is read and written one line at a time on a
+ * background thread; nothing builds a YamlConfiguration of the whole data set.
+ * - progress rows: uuid, total, awarded, bigwin
+ * - marker rows:   world, x, y, z, source (placed | grown)
+ * Progress imports go to the store in batches; marker imports are grouped per chunk and handed to the
+ * marker store one batch per tick. One transfer runs at a time.
+ */
+final class HuntDataTransfer {
+    enum Format {
+        CSV("csv"), NDJSON("ndjson");
+
+        final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        static Format parse(String s) {
+            for (Format f : values()) {
+                if (f.extension.equalsIgnoreCase(s) || f.name().equalsIgnoreCase(s)) return f;
+            }
+            return null;
+        }
+    }
+
+    private static final int PROGRESS_BATCH = 1000;
+    private static final int IMPORT_BATCH = 10_000; // marker rows per hand-over to the main thread
+    private static final String[] PROGRESS_COLUMNS = {"uuid", "total", "awarded", "bigwin"};
+    private static final String[] MARKER_COLUMNS = {"world", "x", "y", "z", "source"};
+
+    private static final List<MarkerStore.ImportChunk> END = new ArrayList<>(); // identity marks the end of the rows
+
+    private final TrickOrTreatPlugin plugin;
+    private final File dir;
+    private final AtomicBoolean busy = new AtomicBoolean(false);
+
+    HuntDataTransfer(TrickOrTreatPlugin plugin) {
+        this.plugin = plugin;
+        this.dir = new File(plugin.getDataFolder(), "data");
+    }
+
+    boolean isBusy() {
+        return busy.get();
+    }
+
+    /* =========================
+       Export
+       ========================= */
+
+    /** @param what "progress", "markers" or "all" */
+    void export(CommandSender sender, Format format, String what) {
+        if (!busy.compareAndSet(false, true)) {
+            sender.sendMessage(ChatColor.RED + "A data transfer is already running.");
+            return;
+        }
+        dir.mkdirs();
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        PumpkinHuntHandler handler = plugin.getPumpkinHandler();
+        boolean progress = !what.equals("markers"), markers = !what.equals("progress");
+
+        Runnable exportMarkers = () -> {
+            if (!markers) {
+                busy.set(false);
+                return;
+            }
+            exportMarkers(sender, handler.markerStore(), format, new File(dir, "markers-" + stamp + "." + format.extension));
+        };
+        if (progress) {
+            exportProgress(sender, handler.progressCache(), format,
+                    new File(dir, "progress-" + stamp + "." + format.extension), exportMarkers);
+        } else {
+            exportMarkers.run();
+        }
+    }
+
+    private void exportProgress(CommandSender sender, ProgressCache cache, Format format, File out, Runnable then) {
+        // query() flushes pending writes first, then streams the store on an async thread
+        File tmp = new File(out.getParentFile(), out.getName() + ".part");
+        cache.query(store -> {
+            long[] rows = {0};
+            try (RowWriter w = new RowWriter(tmp, format, PROGRESS_COLUMNS)) {
+                store.forEach((uuid, pp) -> {
+                    w.row(uuid.toString(), pp.totalBroken, pp.levelsAwarded, pp.bigWinAwarded);
+                    rows[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Files.move(tmp.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return rows[0];
+        }, rows -> {
+            tell(sender, ChatColor.GREEN + "Exported " + rows + " progress row(s) to data/" + out.getName());
+            then.run();
+        }, e -> {
+            tmp.delete();
+            fail(sender, "progress export", e);
+        });
+    }
+
+    private void exportMarkers(CommandSender sender, MarkerStore markers, Format format, File out) {
+        File tmp = new File(out.getParentFile(), out.getName() + ".part");
+        RowWriter w;
+        try {
+            w = new RowWriter(tmp, format, MARKER_COLUMNS);
+        } catch (IOException e) {
+            fail(sender, "marker export", e);
+            return;
+        }
+        long[] rows = {0};
+        var done = markers.streamAll((world, pos, placed) -> {
+            w.row(world, ShardedMarkerStore.unpackX(pos), ShardedMarkerStore.unpackY(pos), ShardedMarkerStore.unpackZ(pos),
+                    placed ? "placed" : "grown");
+            rows[0]++;
+        });
+        if (done == null) {
+            w.closeQuietly();
+            tmp.delete();
+            tell(sender, ChatColor.YELLOW + "Markers are stored inside the chunks (storage.markers.mode: chunk); "
+                    + "they travel with the world and cannot be exported without loading every chunk.");
+            busy.set(false);
+            return;
+        }
+        done.whenComplete((ok, err) -> {
+            try {
+                w.close();
+                Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+                if (cause != null) throw cause instanceof UncheckedIOException u ? u.getCause() : new IOException(cause);
+                Files.move(tmp.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                tell(sender, ChatColor.GREEN + "Exported " + rows[0] + " marker(s) to data/" + out.getName());
+            } catch (IOException e) {
+                tmp.delete();
+                fail(sender, "marker export", e);
+                return;
+            }
+            busy.set(false);
+        });
+    }
+
+    /* =========================
+       Import
+       ========================= */
+
+    /** @param what "progress" or "markers"; reads data/&lt;what&gt;.&lt;ext&gt; unless a file name is given */
+    void importData(CommandSender sender, Format format, String what, String fileName) {
+        File in = new File(dir, fileName != null ? fileName : what + "." + format.extension);
+        if (!in.getParentFile().equals(dir) || !in.isFile()) {
+            sender.sendMessage(ChatColor.RED + "No such file: data/" + in.getName());
+            return;
+        }
+        PumpkinHuntHandler handler = plugin.getPumpkinHandler();
+        if (what.equals("progress") && !handler.progressCache().acceptsImport()) {
+            sender.sendMessage(ChatColor.RED + "Progress import needs storage.progress.format: binary or sqlite "
+                    + "(the yaml store rewrites the whole file for every batch).");
+            return;
+        }
+        if (!busy.compareAndSet(false, true)) {
+            sender.sendMessage(ChatColor.RED + "A data transfer is already running.");
+            return;
+        }
+        if (what.equals("progress")) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> importProgress(sender, handler, format, in));
+        } else {
+            importMarkers(sender, handler, format, in);
+        }
+    }
+
+    /** Background thread: stream rows into the store in batches. */
+    private void importProgress(CommandSender sender, PumpkinHuntHandler handler, Format format, File in) {
+        long rows = 0, skipped = 0;
+        try (RowReader r = new RowReader(in, format, PROGRESS_COLUMNS)) {
+            Map<UUID, PlayerProgress> batch = new HashMap<>();
+            Map<String, String> row;
+            while ((row = r.next()) != null) {
+                try {
+                    UUID uuid = UUID.fromString(row.get("uuid"));
+                    PlayerProgress pp = new PlayerProgress();
+                    pp.totalBroken = Integer.parseInt(row.get("total"));
+                    pp.levelsAwarded = Integer.parseInt(row.getOrDefault("awarded", "0"));
+                    pp.bigWinAwarded = Boolean.parseBoolean(row.getOrDefault("bigwin", "false"));
+                    batch.put(uuid, pp);
+                } catch (RuntimeException e) { // missing column, bad UUID or number
+                    skipped++;
+                    continue;
+                }
+                if (batch.size() >= PROGRESS_BATCH) {
+                    rows += commitProgress(handler, batch);
+                    batch = new HashMap<>();
+                }
+            }
+            rows += commitProgress(handler, batch);
+            tell(sender, ChatColor.GREEN + "Imported " + rows + " progress row(s) from data/" + in.getName()
+                    + (skipped > 0 ? ChatColor.YELLOW + " (" + skipped + " invalid row(s) skipped)" : ""));
+        } catch (IOException | RuntimeException e) { // RuntimeException: store or resident update gave up
+            fail(sender, "progress import (after " + rows + " row(s))", e);
+        } finally {
+            busy.set(false);
+        }
+    }
+
+    private int commitProgress(PumpkinHuntHandler handler, Map<UUID, PlayerProgress> batch) throws IOException {
+        if (batch.isEmpty()) return 0;
+        handler.progressCache().importBatch(batch, handler::residentImported);
+        batch.forEach(handler::progressImported);
+        return batch.size();
+    }
+
+    /**
+     * Reader thread parses and groups rows per chunk, handing batches over through a small queue; the main
+     * thread passes one batch at a time to the store, which writes it off the main thread (files) or applies
+     * it as the chunks load (chunk). No chunk is loaded and no shard is read on the main thread.
+     */
+    private void importMarkers(CommandSender sender, PumpkinHuntHandler handler, Format format, File in) {
+        MarkerStore markers = handler.markerStore();
+        BlockingQueue<List<MarkerStore.ImportChunk>> queue = new ArrayBlockingQueue<>(2);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        long[] skipped = {0};
+        AtomicReference<IOException> readError = new AtomicReference<>(); // set before END is queued
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try (RowReader r = new RowReader(in, format, MARKER_COLUMNS)) {
+                Map<String, Map<Long, MarkerStore.ImportChunk>> chunks = new HashMap<>();
+                int rows = 0;
+                Map<String, String> row;
+                while ((row = r.next()) != null) {
+                    String world;
+                    int x, y, z;
+                    boolean placed;
+                    try {
+                        String source = row.get("source");
+                        if (!"placed".equalsIgnoreCase(source) && !"grown".equalsIgnoreCase(source)) throw new IllegalArgumentException();
+                        world = Objects.requireNonNull(row.get("world"));
+                        x = Integer.parseInt(row.get("x"));
+                        y = Integer.parseInt(row.get("y"));
+                        z = Integer.parseInt(row.get("z"));
+                        placed = "placed".equalsIgnoreCase(source);
+                    } catch (RuntimeException e) {
+                        skipped[0]++;
+                        continue;
+                    }
+                    int cx = x >> 4, cz = z >> 4;
+                    MarkerStore.ImportChunk c = chunks.computeIfAbsent(world, k -> new HashMap<>())
+                            .computeIfAbsent(((long) cx << 32) | (cz & 0xFFFFFFFFL),
+                                    k -> new MarkerStore.ImportChunk(world, cx, cz, new LongHashSet(), new LongHashSet()));
+                    long pos = ShardedMarkerStore.pack(x, y, z);
+                    if (placed) {
+                        c.placed().add(pos);
+                        c.grown().remove(pos);
+                    } else {
+                        c.grown().add(pos);
+                        c.placed().remove(pos);
+                    }
+                    if (++rows == IMPORT_BATCH) {
+                        if (!handOver(queue, batchOf(chunks), cancelled)) return;
+                        chunks.clear();
+                        rows = 0;
+                    }
+                }
+                if (!chunks.isEmpty()) handOver(queue, batchOf(chunks), cancelled);
+            } catch (IOException e) {
+                readError.set(e);
+            } finally {
+                handOver(queue, END, cancelled);
+            }
+        });
+
+        long[] applied = {0}, unknownWorld = {0};
+        CompletableFuture<?>[] writing = {CompletableFuture.completedFuture(null)};
+        BukkitTask[] task = new BukkitTask[1];
+        task[0] = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+            if (plugin.getPumpkinHandler() != handler) { // reloaded: this store is closed
+                stop(task[0], cancelled);
+                fail(sender, "marker import (after " + applied[0] + " marker(s))", new IOException("the plugin was reloaded"));
+                return;
+            }
+            if (!writing[0].isDone()) return;
+            try {
+                writing[0].join();
+            } catch (CompletionException e) {
+                stop(task[0], cancelled);
+                fail(sender, "marker import (after " + applied[0] + " marker(s))", e);
+                return;
+            }
+            List<MarkerStore.ImportChunk> batch = queue.poll();
+            if (batch == null) return;
+            if (batch == END) {
+                task[0].cancel();
+                IOException error = readError.get();
+                if (error != null) {
+                    fail(sender, "marker import (stopped reading data/" + in.getName() + " after "
+                            + applied[0] + " marker(s))", error);
+                    return;
+                }
+                int waiting = markers.importsWaiting();
+                tell(sender, ChatColor.GREEN + "Imported " + applied[0] + " marker(s) from data/" + in.getName()
+                        + (waiting > 0 ? " (" + waiting + " waiting for their chunks to load)" : "")
+                        + (skipped[0] + unknownWorld[0] > 0
+                        ? ChatColor.YELLOW + " (" + skipped[0] + " invalid, " + unknownWorld[0] + " in unknown worlds)" : ""));
+                busy.set(false);
+                return;
+            }
+            List<MarkerStore.ImportChunk> known = new ArrayList<>(batch.size());
+            for (MarkerStore.ImportChunk c : batch) {
+                int n = c.placed().size() + c.grown().size();
+                if (Bukkit.getWorld(c.world()) == null) {
+                    unknownWorld[0] += n;
+                } else {
+                    known.add(c);
+                    applied[0] += n;
+                }
+            }
+            try {
+                writing[0] = markers.importMarkers(known);
+            } catch (RuntimeException e) {
+                stop(task[0], cancelled);
+                fail(sender, "marker import (after " + applied[0] + " marker(s))", e);
+            }
+        }, 1L, 1L);
+    }
+
+    private static List<MarkerStore.ImportChunk> batchOf(Map<String, Map<Long, MarkerStore.ImportChunk>> chunks) {
+        List<MarkerStore.ImportChunk> batch = new ArrayList<>();
+        chunks.values().forEach(byChunk -> batch.addAll(byChunk.values()));
+        return batch;
+    }
+
+    /** Waits for room in the queue; false once the import was cancelled (the reader then stops). */
+    private boolean handOver(BlockingQueue<List<MarkerStore.ImportChunk>> queue, List<MarkerStore.ImportChunk> batch,
+                             AtomicBoolean cancelled) {
+        try {
+            while (!cancelled.get() && plugin.isEnabled()) {
+                if (queue.offer(batch, 1, TimeUnit.SECONDS)) return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private static void stop(BukkitTask task, AtomicBoolean cancelled) {
+        task.cancel();
+        cancelled.set(true);
+    }
+
+    /* =========================
+       Helpers
+       ========================= */
+
+    private void tell(CommandSender sender, String msg) {
+        Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(msg));
+        plugin.getLogger().info(ChatColor.stripColor(msg));
+    }
+
+    private void fail(CommandSender sender, String what, Exception e) {
+        plugin.getLogger().warning("Data " + what + " failed: " + e.getMessage());
+        Bukkit.getScheduler().runTask(plugin, () -> sender.sendMessage(ChatColor.RED + "Data " + what + " failed: " + e.getMessage()));
+        busy.set(false);
+    }
+
+    /** One record per line; CSV with a header row, NDJSON as flat objects. */
+    private static final class RowWriter implements Closeable {
+        private final BufferedWriter out;
+        private final Format format;
+        private final String[] columns;
+        private final StringBuilder line = new StringBuilder(96);
+
+        RowWriter(File file, Format format, String[] columns) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+            this.format = format;
+            this.columns = columns;
+            if (format == Format.CSV) {
+                out.write(String.join(",", columns));
+                out.newLine();
+            }
+        }
+
+        /** Strings are quoted/escaped, numbers and booleans written as-is. */
+        void row(Object... values) {
+            line.setLength(0);
+            if (format == Format.NDJSON) line.append('{');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) line.append(',');
+                Object v = values[i];
+                if (format == Format.NDJSON) {
+                    line.append('"').append(columns[i]).append("\":");
+                    if (v instanceof String s) appendJsonString(s);
+                    else line.append(v);
+                } else {
+                    String s = String.valueOf(v);
+                    if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0) {
+                        line.append('"').append(s.replace("\"", "\"\"")).append('"');
+                    } else {
+                        line.append(s);
+                    }
+                }
+            }
+            if (format == Format.NDJSON) line.append('}');
+            try {
+                out.append(line);
+                out.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void appendJsonString(String s) {
+            line.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') line.append('\\').append(c);
+                else if (c < 0x20) line.append(String.format("\\u%04x", (int) c));
+                else line.append(c);
+            }
+            line.append('"');
+        }
+
+        void closeQuietly() {
+            try {
+                out.close();
+            } catch (IOException ignored) { }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /** Parses one line at a time into column -> value. CSV needs the header row; NDJSON flat objects only. */
+    private static final class RowReader implements Closeable {
+        private final BufferedReader in;
+        private final Format format;
+        private String[] header;
+
+        RowReader(File file, Format format, String[] expected) throws IOException {
+            this.in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16);
+            this.format = format;
+            if (format == Format.CSV) {
+                String first = in.readLine();
+                if (first == null) throw new IOException("empty file");
+                if (first.startsWith("﻿")) first = first.substring(1);
+                header = splitCsv(first).toArray(new String[0]);
+                if (!Arrays.asList(header).contains(expected[0])) {
+                    throw new IOException("missing header row (" + String.join(",", expected) + ")");
+                }
+            }
+        }
+
+        /** @return next row, or null at the end */
+        Map<String, String> next() throws IOException {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                Map<String, String> row = new HashMap<>();
+                if (format == Format.CSV) {
+                    List<String> values = splitCsv(line);
+                    for (int i = 0; i < header.length && i < values.size(); i++) row.put(header[i], values.get(i));
+                } else if (!parseFlatJson(line, row)) {
+                    row.clear(); // malformed line: an empty row is reported as invalid by the caller
+                }
+                return row;
+            }
+            return null;
+        }
+
+        private static List<String> splitCsv(String line) {
+            List<String> out = new ArrayList<>();
+            StringBuilder cur = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"') {
+                        if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                            cur.append('"');
+                            i++;
+                        } else {
+                            quoted = false;
+                        }
+                    } else {
+                        cur.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    out.add(cur.toString().trim());
+                    cur.setLength(0);
+                } else {
+                    cur.append(c);
+                }
+            }
+            out.add(cur.toString().trim());
+            return out;
+        }
+
+        /** {"key": "string" | number | true/false | null, ...}; nested values are rejected. */
+        private static boolean parseFlatJson(String line, Map<String, String> out) {
+            int[] pos = {skipWs(line, 0)};
+            if (pos[0] >= line.length() || line.charAt(pos[0]) != '{') return false;
+            pos[0] = skipWs(line, pos[0] + 1);
+            if (pos[0] < line.length() && line.charAt(pos[0]) == '}') return true;
+            while (pos[0] < line.length()) {
+                String key = readJsonString(line, pos);
+                if (key == null) return false;
+                pos[0] = skipWs(line, pos[0]);
+                if (pos[0] >= line.length() || line.charAt(pos[0]) != ':') return false;
+                pos[0] = skipWs(line, pos[0] + 1);
+                if (pos[0] >= line.length()) return false;
+                String value;
+                if (line.charAt(pos[0]) == '"') {
+                    value = readJsonString(line, pos);
+                    if (value == null) return false;
+                } else {
+                    int start = pos[0];
+                    while (pos[0] < line.length() && ",} \t".indexOf(line.charAt(pos[0])) < 0) pos[0]++;
+                    value = line.substring(start, pos[0]);
+                    if (value.startsWith("{") || value.startsWith("[")) return false;
+                    if (value.equals("null")) value = null;
+                }
+                if (value != null) out.put(key, value);
+                pos[0] = skipWs(line, pos[0]);
+                if (pos[0] >= line.length()) return false;
+                char c = line.charAt(pos[0]);
+                if (c == '}') return true;
+                if (c != ',') return false;
+                pos[0] = skipWs(line, pos[0] + 1);
+            }
+            return false;
+        }
+
+        private static String readJsonString(String s, int[] pos) {
+            if (pos[0] >= s.length() || s.charAt(pos[0]) != '"') return null;
+            StringBuilder sb = new StringBuilder();
+            for (int i = pos[0] + 1; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"') {
+                    pos[0] = i + 1;
+                    return sb.toString();
+                }
+                if (c == '\\' && i + 1 < s.length()) {
+                    char e = s.charAt(++i);
+                    switch (e) {
+                        case 'n': sb.append('\n'); break;
+                        case 't': sb.append('\t'); break;
+                        case 'r': sb.append('\r'); break;
+                        case 'b': sb.append('\b'); break;
+                        case 'f': sb.append('\f'); break;
+                        case 'u':
+                            if (i + 4 >= s.length()) return null;
+                            try {
+                                sb.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+                            } catch (NumberFormatException ex) {
+                                return null;
+                            }
+                            i += 4;
+                            break;
+                        default: sb.append(e); // \" \\ \/
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            return null;
+        }
+
+        private static int skipWs(String s, int i) {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+            return i;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Keyed;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.Registry;
+import org.bukkit.Sound;
+import org.bukkit.block.Biome;
+import org.bukkit.entity.EntityType;
+import org.bukkit.potion.PotionEffectType;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Turns config names into Sound / Material / EntityType / PotionEffectType / Biome, once.
+ *
+ * Accepts every spelling the configs use: ENTITY_PLAYER_LEVELUP, entity_player_levelup,
+ * entity.player.levelup and minecraft:entity.player.levelup (same for the other types).
+ * Handlers resolve their names when they load and pass a config path, so an unknown name is
+ * logged once at load; the result (including misses) is cached for lookups made later at runtime.
+ * No exceptions are used for control flow.
+ */
+final class KeyResolver {
+    private static final Object MISS = new Object();
+
+    private static final Map<String, Object> sounds = new ConcurrentHashMap<>();
+    private static final Map<String, Object> materials = new ConcurrentHashMap<>();
+    private static final Map<String, Object> entityTypes = new ConcurrentHashMap<>();
+    private static final Map<String, Object> effects = new ConcurrentHashMap<>();
+    private static final Map<String, Object> biomes = new ConcurrentHashMap<>();
+
+    // sound keys with '.' replaced by '_' (ENTITY_PLAYER_LEVELUP style); built on first use
+    private static volatile Map<String, Sound> soundsByUnderscoreKey;
+
+    private KeyResolver() { }
+
+    /* =========================
+       Load-time resolution (logs unknown names)
+       ========================= */
+
+    /** @param where config path for the warning; @return null for an empty or unknown name */
+    static Sound sound(String name, String where, Logger log) {
+        return report(sound(name), "sound", name, where, log);
+    }
+
+    static Material material(String name, String where, Logger log) {
+        return report(material(name), "material", name, where, log);
+    }
+
+    static EntityType entityType(String name, String where, Logger log) {
+        return report(entityType(name), "entity type", name, where, log);
+    }
+
+    static PotionEffectType effect(String name, String where, Logger log) {
+        return report(effect(name), "effect", name, where, log);
+    }
+
+    static Biome biome(String name, String where, Logger log) {
+        return report(biome(name), "biome", name, where, log);
+    }
+
+    private static <T> T report(T value, String kind, String name, String where, Logger log) {
+        if (value == null && name != null && !name.isBlank()) {
+            log.warning(where + ": unknown " + kind + " '" + name + "', ignoring it.");
+        }
+        return value;
+    }
+
+    /* =========================
+       Cached lookups (silent)
+       ========================= */
+
+    static Sound sound(String name) {
+        return cached(sounds, name, KeyResolver::lookupSound);
+    }
+
+    static Material material(String name) {
+        return cached(materials, name, n -> {
+            Material m = Material.matchMaterial(n);
+            return m != null ? m : Material.matchMaterial(n.replace('.', '_'));
+        });
+    }
+
+    static EntityType entityType(String name) {
+        return cached(entityTypes, name, n -> registry(Registry.ENTITY_TYPE, n));
+    }
+
+    static PotionEffectType effect(String name) {
+        return cached(effects, name, n -> registry(Registry.EFFECT, n));
+    }
+
+    static Biome biome(String name) {
+        return cached(biomes, name, n -> registry(Registry.BIOME, n));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cached(Map<String, Object> cache, String name, java.util.function.Function<String, T> resolve) {
+        if (name == null || name.isBlank()) return null;
+        Object v = cache.get(name);
+        if (v == null) {
+            v = resolve.apply(name.trim().toLowerCase(Locale.ROOT));
+            if (v == null) v = MISS;
+            cache.put(name, v);
+        }
+        return v == MISS ? null : (T) v;
+    }
+
+    /* =========================
+       Resolution
+       ========================= */
+
+    /** n is lower case: "minecraft:zombie", "zombie", "cave_spider". */
+    private static <T extends Keyed> T registry(Registry<T> registry, String n) {
+        NamespacedKey key = NamespacedKey.fromString(n);
+        return key != null ? registry.get(key) : null;
+    }
+
+    private static Sound lookupSound(String n) {
+        Sound s = registry(Registry.SOUNDS, n);
+        if (s != null) return s;
+        // enum style: the '_' / '.' boundary is not recoverable from the name, so compare flattened keys
+        int colon = n.indexOf(':');
+        String flat = (colon >= 0 ? n.substring(colon + 1) : n).replace('.', '_');
+        Map<String, Sound> index = soundsByUnderscoreKey;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Sound sound : Registry.SOUNDS) index.put(sound.getKey().getKey().replace('.', '_'), sound);
+            soundsByUnderscoreKey = index;
+        }
+        return index.get(flat);
+    }
+}
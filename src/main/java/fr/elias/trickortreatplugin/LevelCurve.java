@@ -0,0 +1,192 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Pumpkin level curve, compiled once from the levels section of pumpkinhunt.yml.
+ *
+ * Everything is expressed through start(k) = pumpkins needed to complete the first k levels:
+ * - table:      levels.targets, stored as prefix sums; lookups are a binary search
+ * - arithmetic: target(i) = first + step * i, closed form, O(1)
+ * - geometric:  start(k) = first * (ratio^k - 1) / (ratio - 1), closed form, O(1)
+ * Formula curves are unbounded unless levels.count is set (> 0).
+ */
+abstract class LevelCurve {
+    static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final int count;
+
+    private LevelCurve(int count) {
+        this.count = count;
+    }
+
+    /** Number of levels, {@link #UNBOUNDED} for open-ended formula curves. */
+    final int count() {
+        return count;
+    }
+
+    final boolean unbounded() {
+        return count == UNBOUNDED;
+    }
+
+    /** Pumpkins needed to complete levels 0..k-1. */
+    abstract long start(int k);
+
+    /** Largest k with start(k) <= total, not yet capped by count. */
+    abstract int rawCrossed(long total);
+
+    /** Number of levels completed with this total (capped at count). */
+    final int crossed(int total) {
+        if (total <= 0) return 0;
+        return Math.min(rawCrossed(total), count);
+    }
+
+    /** Pumpkins needed for the given (0-based) level. */
+    final int target(int level) {
+        return (int) Math.min(Integer.MAX_VALUE, start(level + 1) - start(level));
+    }
+
+    /* =========================
+       Compilation
+       ========================= */
+
+    /**
+     * @param levels   the levels section (may be null)
+     * @param fallback target for table entries that are missing (total-pumpkins)
+     */
+    static LevelCurve compile(ConfigurationSection levels, int fallback, Logger log) {
+        if (levels == null) return new Table(new int[]{fallback});
+
+        String kind = levels.getString("curve", "table");
+        int count = levels.getInt("count", 0);
+        ConfigurationSection f = levels.getConfigurationSection("formula");
+        int first = Math.max(1, f != null ? f.getInt("first", fallback) : fallback);
+
+        switch (kind.toLowerCase(java.util.Locale.ROOT)) {
+            case "arithmetic": {
+                int step = f != null ? f.getInt("step", 0) : 0;
+                if (step < 0) {
+                    log.warning("levels.formula.step must be >= 0, using 0.");
+                    step = 0;
+                }
+                return new Arithmetic(count > 0 ? count : UNBOUNDED, first, step);
+            }
+            case "geometric": {
+                double ratio = f != null ? f.getDouble("ratio", 2.0) : 2.0;
+                if (ratio <= 1.0) {
+                    log.warning("levels.formula.ratio must be > 1, using a constant target instead.");
+                    return new Arithmetic(count > 0 ? count : UNBOUNDED, first, 0);
+                }
+                return new Geometric(count > 0 ? count : UNBOUNDED, first, ratio);
+            }
+            default: {
+                if (!"table".equalsIgnoreCase(kind)) log.warning("Unknown levels.curve '" + kind + "', using table.");
+                int n = Math.max(1, count);
+                List<Integer> list = levels.getIntegerList("targets");
+                int[] t = new int[n];
+                for (int i = 0; i < n; i++) {
+                    t[i] = (i < list.size() && list.get(i) != null && list.get(i) > 0) ? list.get(i) : fallback;
+                }
+                return new Table(t);
+            }
+        }
+    }
+
+    /** Single level of the given size (levels disabled: total-pumpkins). */
+    static LevelCurve single(int target) {
+        return new Table(new int[]{Math.max(1, target)});
+    }
+
+    /* =========================
+       Curves
+       ========================= */
+
+    private static final class Table extends LevelCurve {
+        private final long[] prefix; // prefix[k] = sum of targets[0..k-1]
+
+        Table(int[] targets) {
+            super(targets.length);
+            prefix = new long[targets.length + 1];
+            for (int i = 0; i < targets.length; i++) prefix[i + 1] = prefix[i] + targets[i];
+        }
+
+        @Override
+        long start(int k) {
+            return prefix[Math.max(0, Math.min(k, prefix.length - 1))];
+        }
+
+        @Override
+        int rawCrossed(long total) {
+            int lo = 0, hi = prefix.length - 1; // prefix[0] = 0 <= total
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (prefix[mid] <= total) lo = mid;
+                else hi = mid - 1;
+            }
+            return lo;
+        }
+    }
+
+    private static final class Arithmetic extends LevelCurve {
+        private final long first, step;
+
+        Arithmetic(int count, int first, int step) {
+            super(count);
+            this.first = first;
+            this.step = step;
+        }
+
+        @Override
+        long start(int k) {
+            long n = Math.max(0, k);
+            return n * first + step * (n * (n - 1) / 2);
+        }
+
+        @Override
+        int rawCrossed(long total) {
+            long k;
+            if (step == 0) {
+                k = total / first;
+            } else {
+                // solve step/2 k^2 + (first - step/2) k = total, then fix rounding exactly
+                double b = first - step / 2.0;
+                k = (long) Math.floor((-b + Math.sqrt(b * b + 2.0 * step * total)) / step);
+            }
+            return adjust(this, k, total);
+        }
+    }
+
+    private static final class Geometric extends LevelCurve {
+        private final double first, ratio, logRatio;
+
+        Geometric(int count, int first, double ratio) {
+            super(count);
+            this.first = first;
+            this.ratio = ratio;
+            this.logRatio = Math.log(ratio);
+        }
+
+        @Override
+        long start(int k) {
+            double v = first * (Math.pow(ratio, Math.max(0, k)) - 1) / (ratio - 1);
+            return v >= Long.MAX_VALUE ? Long.MAX_VALUE : Math.round(v);
+        }
+
+        @Override
+        int rawCrossed(long total) {
+            long k = (long) Math.floor(Math.log(total * (ratio - 1) / first + 1) / logRatio);
+            return adjust(this, k, total);
+        }
+    }
+
+    /** Corrects a floating-point estimate so that start(k) <= total < start(k + 1). */
+    private static int adjust(LevelCurve c, long estimate, long total) {
+        int k = (int) Math.max(0, Math.min(estimate, Integer.MAX_VALUE - 1));
+        while (k > 0 && c.start(k) > total) k--;
+        while (k < Integer.MAX_VALUE - 1 && c.start(k + 1) <= total) k++;
+        return k;
+    }
+}
@@ -1,10 +1,6 @@
 package fr.elias.trickortreatplugin;
 
-import net.luckperms.api.LuckPerms;
-import net.luckperms.api.LuckPermsProvider;
-import net.luckperms.api.model.user.User;
 import org.bukkit.Bukkit;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -12,115 +8,87 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
 import java.util.Random;
 
 public class LoginDisguiseListener implements Listener {
     private final TrickOrTreatPlugin plugin;
-    private final FileConfiguration cfg;           // reads config.yml
-    private final LibsDisguisesHandler disguises;  // null if LD disabled/not installed
     private final Random random = new Random();
 
-    /** Use this 2-arg constructor and register with: new LoginDisguiseListener(this, disguises) */
-    public LoginDisguiseListener(TrickOrTreatPlugin plugin, LibsDisguisesHandler disguises) {
+    /** libdisguise.* (config.yml) and the disguise handler are read per event from the plugin. */
+    public LoginDisguiseListener(TrickOrTreatPlugin plugin) {
         this.plugin = plugin;
-        this.disguises = disguises;
-        this.cfg = plugin.getConfig(); // <- pulls libdisguise.login.* from config.yml
     }
 
     @EventHandler
     public void onJoin(PlayerJoinEvent event) {
         // toggles
+        LibsDisguisesHandler disguises = plugin.getDisguises(); // null if LD disabled/not installed
         if (disguises == null) return;
-        if (!cfg.getBoolean("libdisguise.enabled", false)) return;
-        if (!cfg.getBoolean("libdisguise.login.enabled", false)) return;
+        ConfigSnapshot.Disguises settings = plugin.settings().disguises();
+        ConfigSnapshot.Login login = settings.login();
+        if (!settings.enabled() || !login.enabled()) return;
 
         Player p = event.getPlayer();
 
         // choose mob per mode
-        String mob = selectMobFor(p);
+        String mob = selectMobFor(p, login);
         if (mob == null || mob.isEmpty()) return;
 
-        int delay = Math.max(0, cfg.getInt("libdisguise.login.delay-ticks", 5));
-        boolean persistent = cfg.getBoolean("libdisguise.login.persistent", true);
-        int duration = Math.max(1, cfg.getInt("libdisguise.login.duration-seconds", 600));
-
         Bukkit.getScheduler().runTaskLater(plugin, () -> {
             if (!p.isOnline()) return;
-            if (persistent) {
+            if (login.persistent()) {
                 disguises.disguisePlayerAsMob(p, mob);
             } else {
-                disguises.disguisePlayerTemporarily(p, mob, duration, plugin);
+                disguises.disguisePlayerTemporarily(p, mob, login.durationSeconds(), plugin);
             }
-        }, delay);
+        }, login.delayTicks());
     }
 
     @EventHandler
     public void onQuit(PlayerQuitEvent event) {
+        LibsDisguisesHandler disguises = plugin.getDisguises();
         if (disguises == null) return;
-        if (!cfg.getBoolean("libdisguise.enabled", false)) return;
-        if (!cfg.getBoolean("libdisguise.login.enabled", false)) return;
-        if (!cfg.getBoolean("libdisguise.login.undisguise-on-quit", true)) return;
+        ConfigSnapshot.Disguises settings = plugin.settings().disguises();
+        ConfigSnapshot.Login login = settings.login();
+        if (!settings.enabled() || !login.enabled() || !login.undisguiseOnQuit()) return;
 
         try {
             disguises.undisguisePlayer(event.getPlayer());
         } catch (Exception ignored) {}
     }
 
-    private String selectMobFor(Player p) {
-        String mode = cfg.getString("libdisguise.login.mode", "default")
-                .toLowerCase(Locale.ROOT);
-
-        switch (mode) {
+    private String selectMobFor(Player p, ConfigSnapshot.Login login) {
+        switch (login.mode()) {
             case "random": {
-                List<String> pool = cfg.getStringList("libdisguise.login.random-pool");
-                if (pool == null || pool.isEmpty()) {
-                    return cfg.getString("libdisguise.login.default-mob", "ZOMBIE");
+                List<String> pool = login.randomPool();
+                if (pool.isEmpty()) {
+                    return login.defaultMob();
                 }
                 return pool.get(random.nextInt(pool.size()));
             }
             case "group": {
                 String mobByGroup = mobFromLuckPermsGroup(p);
                 if (mobByGroup != null) return mobByGroup;
-                return cfg.getString("libdisguise.login.default-mob", "ZOMBIE");
+                return login.defaultMob();
             }
             case "permission": {
-                String mobByPerm = mobFromPermissions(p);
+                String mobByPerm = mobFromPermissions(p, login);
                 if (mobByPerm != null) return mobByPerm;
-                return cfg.getString("libdisguise.login.default-mob", "ZOMBIE");
+                return login.defaultMob();
             }
             case "default":
             default:
-                return cfg.getString("libdisguise.login.default-mob", "ZOMBIE");
+                return login.defaultMob();
         }
     }
 
     private String mobFromLuckPermsGroup(Player p) {
-        try {
-            LuckPerms lp = LuckPermsProvider.get();
-            User user = lp.getUserManager().getUser(p.getUniqueId());
-            String group = (user != null && user.getPrimaryGroup() != null) ? user.getPrimaryGroup() : "default";
-            String path = "libdisguise.login.groups." + group;
-            return cfg.getString(path, cfg.getString("libdisguise.login.groups.default", null));
-        } catch (Throwable ignored) {
-            return null;
-        }
+        return plugin.getGroups().profile(p).loginMob(); // cached per player (see GroupCache)
     }
 
-    @SuppressWarnings("unchecked")
-    private String mobFromPermissions(Player p) {
-        Object listObj = cfg.get("libdisguise.login.permissions");
-        if (!(listObj instanceof List<?> l)) return null;
-
-        for (Object o : l) {
-            if (o instanceof Map<?, ?> m) {
-                Object node = m.get("node");
-                Object mob = m.get("mob");
-                if (node instanceof String n && mob instanceof String s) {
-                    if (p.hasPermission(n)) return s;
-                }
-            }
+    private static String mobFromPermissions(Player p, ConfigSnapshot.Login login) {
+        for (ConfigSnapshot.PermissionMob entry : login.permissions()) {
+            if (p.hasPermission(entry.node())) return entry.mob();
         }
         return null;
     }
@@ -0,0 +1,143 @@
+package fr.elias.trickortreatplugin;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Minimal open-addressing set of primitive longs (linear probing, backward-shift delete).
+ * No boxing and no per-entry objects: contains/add/remove never allocate
+ * (add only when the table has to grow). Not thread-safe.
+ */
+final class LongHashSet {
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] table;   // 0 marks an empty slot; the key 0 itself is tracked by hasZero
+    private int mask;
+    private int size;
+    private int resizeAt;
+    private boolean hasZero;
+
+    LongHashSet() {
+        this(16);
+    }
+
+    LongHashSet(int expected) {
+        int cap = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+        allocate(cap);
+    }
+
+    int size() {
+        return size + (hasZero ? 1 : 0);
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    boolean contains(long key) {
+        if (key == 0L) return hasZero;
+        long[] t = table;
+        int i = slot(key);
+        while (true) {
+            long cur = t[i];
+            if (cur == 0L) return false;
+            if (cur == key) return true;
+            i = (i + 1) & mask;
+        }
+    }
+
+    /** @return true if the key was not present */
+    boolean add(long key) {
+        if (key == 0L) {
+            if (hasZero) return false;
+            hasZero = true;
+            return true;
+        }
+        int i = slot(key);
+        while (true) {
+            long cur = table[i];
+            if (cur == 0L) break;
+            if (cur == key) return false;
+            i = (i + 1) & mask;
+        }
+        table[i] = key;
+        if (++size >= resizeAt) rehash(table.length << 1);
+        return true;
+    }
+
+    /** @return true if the key was present */
+    boolean remove(long key) {
+        if (key == 0L) {
+            if (!hasZero) return false;
+            hasZero = false;
+            return true;
+        }
+        int i = slot(key);
+        while (true) {
+            long cur = table[i];
+            if (cur == 0L) return false;
+            if (cur == key) break;
+            i = (i + 1) & mask;
+        }
+        // backward-shift deletion keeps probe chains intact without tombstones
+        int gap = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            long cur = table[j];
+            if (cur == 0L) break;
+            int home = slot(cur);
+            boolean stays = (gap <= j) ? (gap < home && home <= j) : (gap < home || home <= j);
+            if (stays) continue;
+            table[gap] = cur;
+            gap = j;
+        }
+        table[gap] = 0L;
+        size--;
+        return true;
+    }
+
+    void clear() {
+        java.util.Arrays.fill(table, 0L);
+        size = 0;
+        hasZero = false;
+    }
+
+    void forEach(LongConsumer action) {
+        if (hasZero) action.accept(0L);
+        for (long cur : table) {
+            if (cur != 0L) action.accept(cur);
+        }
+    }
+
+    long[] toArray() {
+        long[] out = new long[size()];
+        int n = 0;
+        if (hasZero) out[n++] = 0L;
+        for (long cur : table) {
+            if (cur != 0L) out[n++] = cur;
+        }
+        return out;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int cap) {
+        table = new long[cap];
+        mask = cap - 1;
+        resizeAt = (int) (cap * LOAD_FACTOR);
+    }
+
+    private void rehash(int newCap) {
+        long[] old = table;
+        allocate(newCap);
+        for (long cur : old) {
+            if (cur == 0L) continue;
+            int i = slot(cur);
+            while (table[i] != 0L) i = (i + 1) & mask;
+            table[i] = cur;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Where PumpkinHuntHandler remembers whether a pumpkin was placed by a player or grown from a stem.
+ * Selected by storage.markers.mode in pumpkinhunt.yml:
+ * - "files": {@link ShardedMarkerStore}, region shards under pumpkinblocks/
+ * - "chunk": {@link ChunkMarkerStore}, stored inside each chunk's PersistentDataContainer
+ * All methods are called on the main thread.
+ */
+interface MarkerStore {
+    int NONE   = 0;
+    int PLACED = 1;
+    int GROWN  = 2;
+
+    /** A group of markers for {@link MarkerSweeper}: positions packed with {@link ShardedMarkerStore#pack}. */
+    record SweepUnit(World world, Supplier<long[]> positions) { }
+
+    /** Imported markers of one chunk (/tt data import), positions packed with {@link ShardedMarkerStore#pack}. */
+    record ImportChunk(String world, int cx, int cz, LongHashSet placed, LongHashSet grown) { }
+
+    /** @return NONE, PLACED or GROWN */
+    int lookup(Block block);
+
+    void markPlaced(Block block);
+
+    void markGrown(Block block);
+
+    void clear(Block block);
+
+    default void chunkLoaded(Chunk chunk) { }
+
+    default void chunkUnloaded(Chunk chunk) { }
+
+    default void worldUnloaded(World world) { }
+
+    /** Units covering the markers of loaded chunks; positions are read only when the sweeper gets to a unit. */
+    List<SweepUnit> sweepUnits();
+
+    /**
+     * Streams every stored marker to the visitor off the main thread (export).
+     * @return null when this mode cannot enumerate markers without loading chunks
+     */
+    default CompletableFuture<Void> streamAll(ShardedMarkerStore.MarkerVisitor visitor) {
+        return null;
+    }
+
+    /**
+     * Import: imported markers replace what is stored at their positions. Called with rows already grouped
+     * per chunk; never loads chunks or reads files on the main thread.
+     * @return completes (on any thread) once the batch is written or queued for its chunks
+     */
+    CompletableFuture<Void> importMarkers(List<ImportChunk> batch);
+
+    /** Imported markers still waiting for their chunk to load. */
+    default int importsWaiting() {
+        return 0;
+    }
+
+    /** Persist pending changes now (saveState). */
+    void flush();
+
+    /** Final save on disable/reload. */
+    void close();
+}
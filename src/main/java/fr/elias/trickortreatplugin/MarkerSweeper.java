@@ -0,0 +1,102 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.List;
+
+/**
+ * Removes stale pumpkin markers: pumpkins that vanished without a BlockBreakEvent
+ * (explosions, pistons, WorldEdit, water, regenerated chunks) would otherwise keep their marker forever.
+ *
+ * Walks {@link MarkerStore#sweepUnits()} a little every tick: at most markers-per-tick checks,
+ * only in chunks that are currently loaded (never loads one). After a full pass it logs
+ * how many markers were reclaimed and rests for cycle-pause-seconds.
+ */
+final class MarkerSweeper {
+    private final TrickOrTreatPlugin plugin;
+    private final MarkerStore markers;
+    private final int perTick;
+    private final long pauseMs;
+    private BukkitTask task;
+
+    // current pass
+    private List<MarkerStore.SweepUnit> units;
+    private int unitIndex;
+    private World world;
+    private long[] positions;
+    private int posIndex;
+    private int checked;
+    private int reclaimed;
+
+    private long nextPassAt;
+
+    MarkerSweeper(TrickOrTreatPlugin plugin, MarkerStore markers, ConfigSnapshot.Sweep cfg) {
+        this.plugin = plugin;
+        this.markers = markers;
+        this.perTick = cfg.markersPerTick();
+        this.pauseMs = 1000L * cfg.cyclePauseSeconds();
+
+        if (cfg.enabled()) {
+            this.nextPassAt = System.currentTimeMillis() + pauseMs; // let the server settle first
+            this.task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 20L, 1L);
+        }
+    }
+
+    void close() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void tick() {
+        if (units == null) {
+            if (System.currentTimeMillis() < nextPassAt) return;
+            units = markers.sweepUnits();
+            unitIndex = 0;
+            positions = null;
+        }
+
+        int budget = perTick;
+        while (budget > 0) {
+            if (positions == null || posIndex >= positions.length) {
+                if (unitIndex >= units.size()) {
+                    finishPass();
+                    return;
+                }
+                MarkerStore.SweepUnit unit = units.get(unitIndex++);
+                world = unit.world();
+                positions = unit.positions().get();
+                posIndex = 0;
+                budget--; // opening a unit costs a read too
+                continue;
+            }
+
+            long pos = positions[posIndex++];
+            budget--;
+            int x = ShardedMarkerStore.unpackX(pos), z = ShardedMarkerStore.unpackZ(pos);
+            if (!world.isChunkLoaded(x >> 4, z >> 4)) continue;
+            checked++;
+            Block block = world.getBlockAt(x, ShardedMarkerStore.unpackY(pos), z);
+            if (block.getType() != Material.PUMPKIN) {
+                markers.clear(block);
+                reclaimed++;
+            }
+        }
+    }
+
+    private void finishPass() {
+        if (reclaimed > 0) {
+            plugin.getLogger().info("Pumpkin marker sweep: checked " + checked + " marker(s), reclaimed " + reclaimed + " stale.");
+        }
+        checked = reclaimed = 0;
+        units = null;
+        positions = null;
+        world = null;
+        nextPassAt = System.currentTimeMillis() + pauseMs;
+    }
+}
@@ -1,103 +1,101 @@
 package fr.elias.trickortreatplugin;
 
-import org.bukkit.Material;
-import org.bukkit.Sound;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.entity.Entity;
-import org.bukkit.entity.Monster;
-import org.bukkit.entity.Skeleton;
-import org.bukkit.entity.Zombie;
+import org.bukkit.Location;
+import org.bukkit.entity.LivingEntity;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
-import org.bukkit.event.entity.EntitySpawnEvent;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
 import org.bukkit.inventory.EntityEquipment;
-import org.bukkit.inventory.ItemStack;
 
 import java.util.Random;
-
+import java.util.Set;
+
+/**
+ * Spooky mobs and jump-scares on creature spawns. Dispatch goes through the decision table compiled from
+ * hauntedmobs.yml (see ConfigSnapshot.HauntedMobs): types without a rule return after one lookup, and the
+ * type and spawn reason index straight to the few spooky-mobs rules left to check for world, biome and light.
+ * Sounds, disguises and jump-scares that pass their chance roll still need a token from the chunk and nearby
+ * players (see SpawnEffectLimiter); equipment is always applied.
+ */
 public class MobSpawnHandler implements Listener {
     private final TrickOrTreatPlugin plugin;
-    private final FileConfiguration cfg;
-    private final LibsDisguisesHandler disguises; // null when LD disabled/not installed
     private final Random random = new Random();
+    private final SpawnEffectLimiter limiter = new SpawnEffectLimiter(); // per chunk / nearby player, kept across reloads
 
-    public MobSpawnHandler(TrickOrTreatPlugin plugin, FileConfiguration hauntedMobsConfig, LibsDisguisesHandler disguises) {
+    /** hauntedmobs.yml settings and the disguise handler are read per spawn, so a reload applies at once. */
+    public MobSpawnHandler(TrickOrTreatPlugin plugin) {
         this.plugin = plugin;
-        this.cfg = hauntedMobsConfig;
-        this.disguises = disguises;
     }
 
-    @EventHandler
-    public void onMobSpawn(EntitySpawnEvent event) {
-        Entity entity = event.getEntity();
-
-        if (entity instanceof Zombie) {
-            handleSpooky((Monster) entity, "zombie");
-            handleOptionalDisguise((Monster) entity, "zombie");
-        } else if (entity instanceof Skeleton) {
-            handleSpooky((Monster) entity, "skeleton");
-            handleOptionalDisguise((Monster) entity, "skeleton");
+    @EventHandler(ignoreCancelled = true)
+    public void onMobSpawn(CreatureSpawnEvent event) {
+        ConfigSnapshot.HauntedMobs settings = plugin.settings().haunted();
+        ConfigSnapshot.SpawnRule rule = settings.rules().get(event.getEntityType());
+        if (rule == null) return;
+
+        LivingEntity entity = event.getEntity();
+        Location at = entity.getLocation();
+        SpawnReason reason = event.getSpawnReason();
+        LibsDisguisesHandler disguises = plugin.getDisguises(); // null when LD disabled/not installed
+
+        ConfigSnapshot.SpookyMob spooky = rule.spooky(reason, at);
+        if (spooky != null) {
+            handleSpooky(entity, at, spooky, settings);
+            handleOptionalDisguise(entity, at, spooky, disguises, settings);
         }
 
         // Jump-scare sound
-        double chance = cfg.getDouble("jump-scares.ghost-mob.spawn-chance", 0.15);
-        if (random.nextDouble() < chance) {
-            String snd = cfg.getString("jump-scares.ghost-mob.sound", "ENTITY_GHAST_SCREAM");
-            try {
-                entity.getWorld().playSound(entity.getLocation(), Sound.valueOf(snd.toUpperCase()), 1.0f, 1.0f);
-            } catch (IllegalArgumentException ignored) {}
+        ConfigSnapshot.JumpScare scare = rule.jumpScare();
+        if (scare != null && allowed(scare.reasons(), reason) && random.nextDouble() < scare.chance()
+                && limiter.tryAcquire(at, settings.effectLimits())) {
+            plugin.getEffects().play(scare.sound(), null, at);
 
             // Optional LD disguise for jump-scare (brief effect)
-            if (disguises != null) {
-                String as = cfg.getString("jump-scares.ghost-mob.disguise-as", null);
-                int dur = Math.max(1, cfg.getInt("jump-scares.ghost-mob.disguise-duration-seconds", 3));
-                if (as != null && !as.isEmpty()) {
-                    disguises.disguiseEntityTemporarily(entity, as, dur, plugin);
-                }
+            if (disguises != null && scare.disguiseAs() != null) {
+                disguises.disguiseEntityTemporarily(entity, scare.disguiseAs(), scare.disguiseSeconds(), plugin);
             }
 
-            if (cfg.getBoolean("logging.jump-scares", false)) {
+            if (settings.logJumpScares()) {
                 plugin.getLogger().info("A ghost mob jump scare occurred!");
             }
         }
     }
 
-    private void handleSpooky(Monster mob, String type) {
-        double chance = cfg.getDouble("spooky-mobs." + type + ".spawn-chance", 0.0);
-        if (random.nextDouble() >= chance) return;
+    private static boolean allowed(Set<SpawnReason> reasons, SpawnReason reason) {
+        return reasons == null || reasons.contains(reason);
+    }
+
+    private void handleSpooky(LivingEntity mob, Location at, ConfigSnapshot.SpookyMob spooky, ConfigSnapshot.HauntedMobs settings) {
+        if (random.nextDouble() >= spooky.spawnChance()) return;
 
-        // Helmet (NPE-safe)
-        String headMat = cfg.getString("spooky-mobs." + type + ".head", "CARVED_PUMPKIN");
-        Material mat = Material.matchMaterial(headMat);
-        if (mat != null) {
+        // Equipment set (prototypes, copied by the setters); not an effect, so never rate-limited
+        ConfigSnapshot.Equipment set = spooky.equipment().pick(random);
+        if (set != null) {
             EntityEquipment eq = mob.getEquipment();
             if (eq != null) {
-                eq.setHelmet(new ItemStack(mat));
+                set.apply(eq);
             }
         }
 
-        // Sound
-        String soundName = cfg.getString("spooky-mobs." + type + ".sound", "ENTITY_WITHER_SPAWN");
-        try {
-            mob.getWorld().playSound(mob.getLocation(), Sound.valueOf(soundName.toUpperCase()), 1.0F, 1.0F);
-        } catch (IllegalArgumentException ignored) {}
+        // Sound, unless the chunk / nearby players are out of tokens (farm / spawner flood)
+        EffectsEngine.Effect sound = spooky.sounds().pick(random);
+        if (sound != null && limiter.tryAcquire(at, settings.effectLimits())) {
+            plugin.getEffects().play(sound, null, at);
+        }
 
-        if (cfg.getBoolean("logging.spooky-mobs", false)) {
-            plugin.getLogger().info("A spooky " + type + " has spawned with custom head and sound.");
+        if (settings.logSpooky()) {
+            plugin.getLogger().info("A spooky " + spooky.name() + " has spawned with custom head and sound.");
         }
     }
 
-    private void handleOptionalDisguise(Monster mob, String type) {
+    private void handleOptionalDisguise(LivingEntity mob, Location at, ConfigSnapshot.SpookyMob spooky,
+                                        LibsDisguisesHandler disguises, ConfigSnapshot.HauntedMobs settings) {
         if (disguises == null) return; // LD not enabled
-        String pathBase = "spooky-mobs." + type + ".";
-
-        String as = cfg.getString(pathBase + "disguise-as", null);
-        if (as == null || as.isEmpty()) return;
-
-        double chance = cfg.getDouble(pathBase + "disguise-chance", 0.25);
-        if (random.nextDouble() >= chance) return;
+        if (spooky.disguises().options().isEmpty()) return;
+        if (random.nextDouble() >= spooky.disguiseChance()) return;
+        if (!limiter.tryAcquire(at, settings.effectLimits())) return;
 
-        int dur = Math.max(1, cfg.getInt(pathBase + "disguise-duration-seconds", 30));
-        disguises.disguiseEntityTemporarily(mob, as, dur, plugin);
+        disguises.disguiseEntityTemporarily(mob, spooky.disguises().pick(random), spooky.disguiseSeconds(), plugin);
     }
 }
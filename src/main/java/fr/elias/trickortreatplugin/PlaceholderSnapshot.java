@@ -0,0 +1,8 @@
+package fr.elias.trickortreatplugin;
+
+/**
+ * Pre-rendered placeholder values of one player.
+ * Immutable: published by the main thread whenever the player's progress changes,
+ * read by TrickOrTreatPlaceholders from any thread without locking or allocating.
+ */
+record PlaceholderSnapshot(String pumpkins, String pumpkinsTotal, String pumpkinsLevel) { }
@@ -0,0 +1,19 @@
+package fr.elias.trickortreatplugin;
+
+/**
+ * Pumpkin hunt progress of a single player.
+ * Mutated on the main thread only; background writers work on {@link #copy()}.
+ */
+class PlayerProgress {
+    int totalBroken = 0;
+    int levelsAwarded = 0; // number of per-level wins already granted
+    boolean bigWinAwarded = false;
+
+    PlayerProgress copy() {
+        PlayerProgress c = new PlayerProgress();
+        c.totalBroken = totalBroken;
+        c.levelsAwarded = levelsAwarded;
+        c.bigWinAwarded = bigWinAwarded;
+        return c;
+    }
+}
@@ -0,0 +1,356 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind cache for pumpkin progress in front of a {@link ProgressStore}.
+ * storage.progress.format selects the backend:
+ * - "yaml":   pumpkinprogress.yml (the file itself is still parsed at startup)
+ * - "binary": pumpkinprogress.bin ({@link BinaryProgressFile}), nothing parsed
+ * - "sqlite": pumpkinprogress.db ({@link SqlProgressStore}), indexed queries
+ * Switching away from yaml imports an existing pumpkinprogress.yml once and renames it to .migrated.
+ *
+ * Residency: only players that are online (or were just looked up) are kept in memory.
+ * - {@link #preload} runs on AsyncPlayerPreLoginEvent, {@link #loadAsync} serves join / offline lookups.
+ * - After quit an entry stays for resident-grace-seconds, then it is dropped (its pending write stays queued);
+ *   above resident-max, offline entries are dropped oldest first. Online players are never evicted.
+ * - Loads look at pending and in-flight writes before the store, so an evicted player never reads stale data.
+ *
+ * - The main thread only mutates the in-memory {@link PlayerProgress} and calls {@link #markDirty}.
+ * - Dirty entries are copied and written in batches by an async task,
+ *   every flush-interval or as soon as flush-threshold players are dirty.
+ * - {@link #close()} cancels the task and does a final synchronous flush.
+ */
+class ProgressCache {
+    private final TrickOrTreatPlugin plugin;
+    private final ProgressStore store;
+    private final Object writeLock = new Object();
+
+    private final Map<UUID, PlayerProgress> resident = new ConcurrentHashMap<>();       // filled by loaders, mutated on main thread
+    private final Map<UUID, Long> offlineSince = new HashMap<>();                       // main thread
+    private final Map<UUID, PlayerProgress> dirty = new ConcurrentHashMap<>();          // copies awaiting write
+    private final Map<UUID, PlayerProgress> writing = new ConcurrentHashMap<>();        // copies being written
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+
+    private final int flushThreshold;
+    private final long graceMs;
+    private final int maxResident;
+    private BukkitTask flushTask;
+    private BukkitTask evictTask;
+    private Consumer<UUID> evictionListener = uuid -> { };
+
+    /** A read against the backend, run on the writer side. */
+    interface StoreQuery<T> {
+        T run(ProgressStore store) throws IOException;
+    }
+
+    ProgressCache(TrickOrTreatPlugin plugin, File dataFolder, ConfigSnapshot.ProgressStorage cfg) {
+        this.plugin = plugin;
+
+        this.store = openStore(dataFolder, cfg.format());
+
+        long intervalSec = cfg.flushIntervalSeconds();
+        this.flushThreshold = cfg.flushThreshold();
+        this.graceMs = 1000L * cfg.residentGraceSeconds();
+        this.maxResident = cfg.residentMax();
+
+        this.flushTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(
+                plugin, this::flush, 20L * intervalSec, 20L * intervalSec);
+        this.evictTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::evict, 200L, 200L);
+    }
+
+    /* =========================
+       Main-thread API
+       ========================= */
+
+    /** Resident progress, or null if the player is not loaded (binary format reads it on the spot). */
+    PlayerProgress get(UUID uuid) {
+        PlayerProgress pp = resident.get(uuid);
+        if (pp == null && store.directLookup()) pp = getOrCreate(uuid);
+        return pp;
+    }
+
+    /**
+     * Progress to mutate. Normally already resident (preloaded at login);
+     * otherwise it is read synchronously so a break never starts from 0.
+     * @return null only if the store could not be read
+     */
+    PlayerProgress getOrCreate(UUID uuid) {
+        PlayerProgress pp = resident.get(uuid);
+        if (pp != null) return pp;
+        try {
+            return resident.computeIfAbsent(uuid, k -> {
+                try {
+                    return loadOrNew(k);
+                } catch (IOException e) {
+                    throw new java.io.UncheckedIOException(e);
+                }
+            });
+        } catch (java.io.UncheckedIOException e) {
+            plugin.getLogger().warning("Failed to read pumpkin progress of " + uuid + ": " + e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    boolean isResident(UUID uuid) {
+        return resident.containsKey(uuid);
+    }
+
+    /** Blocking load into the resident set; called from AsyncPlayerPreLoginEvent (async thread). */
+    void preload(UUID uuid) {
+        if (resident.containsKey(uuid)) return;
+        try {
+            resident.putIfAbsent(uuid, loadOrNew(uuid));
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to preload pumpkin progress of " + uuid + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads off the main thread and hands the resident entry to the callback on the main thread, or null
+     * when the store failed (after a warning), so callers can always clean up.
+     * Offline players loaded this way are evicted after the grace period like anyone who quit.
+     */
+    void loadAsync(UUID uuid, Consumer<PlayerProgress> callback) {
+        PlayerProgress known = resident.get(uuid);
+        if (known != null) {
+            callback.accept(known);
+            return;
+        }
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            PlayerProgress loaded;
+            try {
+                loaded = loadOrNew(uuid);
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().warning("Failed to load pumpkin progress of " + uuid + ": " + e.getMessage());
+                plugin.getServer().getScheduler().runTask(plugin, () -> callback.accept(null));
+                return;
+            }
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                PlayerProgress pp = resident.computeIfAbsent(uuid, k -> loaded);
+                if (plugin.getServer().getPlayer(uuid) == null) offlineSince.putIfAbsent(uuid, System.currentTimeMillis());
+                callback.accept(pp);
+            });
+        });
+    }
+
+    void joined(UUID uuid) {
+        offlineSince.remove(uuid);
+    }
+
+    void quit(UUID uuid) {
+        offlineSince.put(uuid, System.currentTimeMillis());
+    }
+
+    /** Called on the main thread for every entry dropped from memory. */
+    void setEvictionListener(Consumer<UUID> listener) {
+        this.evictionListener = listener;
+    }
+
+    /** O(1): remember a copy of the new values; the writer persists it later. */
+    void markDirty(UUID uuid, PlayerProgress pp) {
+        dirty.put(uuid, pp.copy());
+        if (dirty.size() >= flushThreshold && flushQueued.compareAndSet(false, true)) {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                flushQueued.set(false);
+                flush();
+            });
+        }
+    }
+
+    int size() {
+        return resident.size();
+    }
+
+    /** Players that already received the big win; the callback runs on the main thread. */
+    void queryBigWinners(Consumer<List<UUID>> callback) {
+        query(ProgressStore::bigWinners, callback);
+    }
+
+    /** Flushes pending writes, runs the query off the main thread and hands the result back to it. */
+    <T> void query(StoreQuery<T> q, Consumer<T> callback) {
+        query(q, callback, e -> plugin.getLogger().warning("Pumpkin progress query failed: " + e.getMessage()));
+    }
+
+    /** Same, with the failure (I/O or a store bug) handed to onError (on the query thread). */
+    <T> void query(StoreQuery<T> q, Consumer<T> callback, Consumer<Exception> onError) {
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            flush();
+            try {
+                T result = q.run(store);
+                plugin.getServer().getScheduler().runTask(plugin, () -> callback.accept(result));
+            } catch (IOException | RuntimeException e) {
+                onError.accept(e);
+            }
+        });
+    }
+
+    boolean acceptsImport() {
+        return store.bulkImport();
+    }
+
+    /**
+     * Import: writes rows straight to the store (background thread). Pending writes for those players are dropped;
+     * resident players take the imported values on the main thread, after which residentChanged is told.
+     */
+    void importBatch(Map<UUID, PlayerProgress> batch, Consumer<UUID> residentChanged) throws IOException {
+        synchronized (writeLock) {
+            batch.keySet().forEach(dirty::remove);
+            store.updateAll(batch);
+        }
+        List<UUID> hits = new ArrayList<>();
+        for (UUID uuid : batch.keySet()) {
+            if (resident.containsKey(uuid)) hits.add(uuid);
+        }
+        if (hits.isEmpty()) return;
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            for (UUID uuid : hits) {
+                PlayerProgress pp = resident.get(uuid), in = batch.get(uuid);
+                if (pp == null) continue;
+                pp.totalBroken = in.totalBroken;
+                pp.levelsAwarded = in.levelsAwarded;
+                pp.bigWinAwarded = in.bigWinAwarded;
+                dirty.put(uuid, pp.copy()); // overrides a break that slipped in before this task
+                residentChanged.accept(uuid);
+            }
+        });
+    }
+
+    /* =========================
+       Persistence
+       ========================= */
+
+    private ProgressStore openStore(File dataFolder, String format) {
+        File yamlFile = new File(dataFolder, "pumpkinprogress.yml");
+        dataFolder.mkdirs();
+        try {
+            switch (format.toLowerCase(Locale.ROOT)) {
+                case "binary": {
+                    File bin = new File(dataFolder, "pumpkinprogress.bin");
+                    if (!bin.exists() && yamlFile.exists()) {
+                        int n = BinaryProgressFile.convertYaml(yamlFile, bin, plugin.getLogger());
+                        retire(yamlFile, n, bin);
+                    }
+                    BinaryProgressFile f = BinaryProgressFile.open(bin);
+                    plugin.getLogger().info("Opened " + bin.getName() + " (" + f.size() + " player(s)).");
+                    return f;
+                }
+                case "sqlite": {
+                    File db = new File(dataFolder, "pumpkinprogress.db");
+                    boolean fresh = !db.exists();
+                    SqlProgressStore sql = new SqlProgressStore(db);
+                    if (fresh && yamlFile.exists()) {
+                        Map<UUID, PlayerProgress> all = new HashMap<>();
+                        new YamlProgressStore(yamlFile, plugin.getLogger()).forEach(all::put);
+                        sql.updateAll(all);
+                        retire(yamlFile, all.size(), db);
+                    }
+                    return sql;
+                }
+                default:
+                    if (!"yaml".equalsIgnoreCase(format)) {
+                        plugin.getLogger().warning("Unknown storage.progress.format '" + format + "', using yaml.");
+                    }
+                    return new YamlProgressStore(yamlFile, plugin.getLogger());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open pumpkin progress (" + format + "): " + e.getMessage(), e);
+        }
+    }
+
+    private void retire(File yamlFile, int converted, File target) throws IOException {
+        Files.move(yamlFile.toPath(), new File(yamlFile.getParentFile(), yamlFile.getName() + ".migrated").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        plugin.getLogger().info("Converted pumpkin progress for " + converted + " player(s) to " + target.getName() + ".");
+    }
+
+    /** Newest known values: pending write, then in-flight write, then the store. */
+    private PlayerProgress loadOrNew(UUID uuid) throws IOException {
+        PlayerProgress pp = dirty.get(uuid);
+        if (pp == null) pp = writing.get(uuid);
+        if (pp != null) return pp.copy();
+        pp = store.load(uuid);
+        return pp != null ? pp : new PlayerProgress();
+    }
+
+    /** Main thread: drop offline entries past the grace period, then the oldest ones above resident-max. */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        // entries loaded at login for players that never joined
+        for (UUID uuid : resident.keySet()) {
+            if (!offlineSince.containsKey(uuid) && plugin.getServer().getPlayer(uuid) == null) offlineSince.put(uuid, now);
+        }
+        List<Map.Entry<UUID, Long>> offline = new ArrayList<>(offlineSince.entrySet());
+        offline.sort(Map.Entry.comparingByValue());
+        int over = resident.size() - maxResident;
+        boolean evictedDirty = false;
+        for (Map.Entry<UUID, Long> e : offline) {
+            if (now - e.getValue() < graceMs && over <= 0) break;
+            UUID uuid = e.getKey();
+            offlineSince.remove(uuid);
+            if (plugin.getServer().getPlayer(uuid) != null) continue; // rejoined meanwhile
+            resident.remove(uuid);
+            over--;
+            evictedDirty |= dirty.containsKey(uuid);
+            evictionListener.accept(uuid);
+        }
+        // write evicted players back now instead of waiting for the next interval
+        if (evictedDirty && flushQueued.compareAndSet(false, true)) {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                flushQueued.set(false);
+                flush();
+            });
+        }
+    }
+
+    /** Writes every dirty entry in one batch. Safe from any thread. */
+    void flush() {
+        synchronized (writeLock) {
+            if (dirty.isEmpty()) return;
+
+            // visible in 'writing' before leaving 'dirty', so loaders never miss it
+            Map<UUID, PlayerProgress> batch = new HashMap<>();
+            for (Map.Entry<UUID, PlayerProgress> e : dirty.entrySet()) {
+                writing.put(e.getKey(), e.getValue());
+                dirty.remove(e.getKey(), e.getValue());
+                batch.put(e.getKey(), e.getValue());
+            }
+            try {
+                store.updateAll(batch);
+            } catch (IOException e) {
+                // keep newer values if the player changed again meanwhile
+                batch.forEach(dirty::putIfAbsent);
+                plugin.getLogger().warning("Failed to save pumpkin progress: " + e.getMessage());
+            } finally {
+                batch.forEach(writing::remove);
+            }
+        }
+    }
+
+    /** Stop the background writer and flush whatever is still pending. */
+    void close() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        if (evictTask != null) {
+            evictTask.cancel();
+            evictTask = null;
+        }
+        flush();
+        try {
+            store.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to close pumpkin progress storage: " + e.getMessage());
+        }
+    }
+}
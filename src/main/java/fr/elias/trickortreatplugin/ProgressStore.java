@@ -0,0 +1,55 @@
+package fr.elias.trickortreatplugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Backend behind {@link ProgressCache}. Selected by storage.progress.format in pumpkinhunt.yml:
+ * - "yaml":   {@link YamlProgressStore} (pumpkinprogress.yml)
+ * - "binary": {@link BinaryProgressFile} (pumpkinprogress.bin)
+ * - "sqlite": {@link SqlProgressStore} (pumpkinprogress.db)
+ *
+ * Writes and queries run on the cache's writer thread, never on the main thread.
+ * Implementations are thread-safe.
+ */
+interface ProgressStore {
+
+    /** @return the stored progress, or null if the player has none */
+    PlayerProgress load(UUID uuid) throws IOException;
+
+    void update(UUID uuid, PlayerProgress pp) throws IOException;
+
+    /** Writes all entries as one batch (one save / one transaction). */
+    void updateAll(Map<UUID, PlayerProgress> batch) throws IOException;
+
+    void forEach(BiConsumer<UUID, PlayerProgress> action) throws IOException;
+
+    /**
+     * True when {@link #load} is cheap enough to call from the main thread on demand (no parse, no query).
+     * Otherwise the cache loads players off the main thread (login, async lookups)
+     * and only falls back to a blocking read when a missing player breaks a pumpkin.
+     */
+    default boolean directLookup() {
+        return false;
+    }
+
+    /** False when every batch rewrites the whole store, which makes a large import quadratic. */
+    default boolean bulkImport() {
+        return true;
+    }
+
+    /** Players that already received the big win (/tt winners). Scans by default; indexed where the backend can. */
+    default List<UUID> bigWinners() throws IOException {
+        List<UUID> out = new ArrayList<>();
+        forEach((uuid, pp) -> {
+            if (pp.bigWinAwarded) out.add(uuid);
+        });
+        return out;
+    }
+
+    void close() throws IOException;
+}
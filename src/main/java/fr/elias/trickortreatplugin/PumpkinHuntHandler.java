@@ -1,215 +1,207 @@
 package fr.elias.trickortreatplugin;
 
 import org.bukkit.Bukkit;
-import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.Sound;
-import org.bukkit.World;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.entity.Firework;
+import org.bukkit.block.Block;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockGrowEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Collectors;
 
 public class PumpkinHuntHandler implements Listener {
     private final TrickOrTreatPlugin plugin;
-    private final FileConfiguration phCfg; // pumpkinhunt.yml
 
-    // progress persistence (now structured)
-    private final File progressFile;
-    private final FileConfiguration progressCfg;
-    private final Map<UUID, PlayerProgress> progress = new HashMap<>();
+    // progress persistence (write-behind, see ProgressCache)
+    private final ProgressCache progress;
 
-    // pumpkin source persistence
-    private final File blocksFile;
-    private final FileConfiguration blocksCfg;
-    private final Set<String> placed = new HashSet<>();
-    private final Set<String> grown  = new HashSet<>();
+    // pumpkin source persistence (storage.markers.mode: files | chunk)
+    private final MarkerStore markers;
+    private final MarkerSweeper sweeper;
 
-    public PumpkinHuntHandler(TrickOrTreatPlugin plugin, FileConfiguration pumpkinHuntConfig) {
+    // pumpkin break cooldown (separate from the villager one)
+    private final CooldownService.Namespace cooldown;
+
+    // placeholder values per online player, rebuilt on change (see PlaceholderSnapshot)
+    private final Map<UUID, PlaceholderSnapshot> snapshots = new ConcurrentHashMap<>();
+    private volatile PlaceholderSnapshot emptySnapshot; // re-rendered when the level curve changes
+
+    // ranking by total, kept up to date on every counted break
+    private final PumpkinLeaderboard leaderboard;
+
+    // offline placeholder lookups currently being loaded (any thread)
+    private final Set<UUID> offlineLoads = ConcurrentHashMap.newKeySet();
+
+    /** Settings are read per event from {@link TrickOrTreatPlugin#settings()}; storage is set up once from the current ones. */
+    public PumpkinHuntHandler(TrickOrTreatPlugin plugin) {
         this.plugin = plugin;
-        this.phCfg = pumpkinHuntConfig;
+        this.emptySnapshot = render(0);
+        this.leaderboard = new PumpkinLeaderboard(plugin);
+
+        this.cooldown = plugin.getCooldowns().namespace("pumpkin");
+
+        // progress storage (format per storage.progress.format)
+        ConfigSnapshot.Storage storage = plugin.settings().hunt().storage();
+        this.progress = new ProgressCache(plugin, plugin.getDataFolder(), storage.progress());
+
+        // block source markers (older storage is migrated once, then renamed)
+        File shardDir = new File(plugin.getDataFolder(), "pumpkinblocks");
+        File legacyFile = new File(plugin.getDataFolder(), "pumpkinblocks.yml");
+        ConfigSnapshot.MarkerStorage markerCfg = storage.markers();
+        this.markers = markerCfg.chunkMode()
+                ? new ChunkMarkerStore(plugin, shardDir, legacyFile, markerCfg)
+                : new ShardedMarkerStore(plugin, shardDir, legacyFile, markerCfg);
+        this.sweeper = new MarkerSweeper(plugin, markers, markerCfg.sweep());
+
+        // fill the leaderboard from storage in the background; live updates take precedence
+        progress.query(store -> {
+            store.forEach((uuid, pp) -> leaderboard.seed(uuid, pp.totalBroken));
+            return leaderboard.size();
+        }, n -> plugin.getLogger().info("Pumpkin leaderboard ready (" + n + " player(s))."));
+
+        // only online players stay resident; drop their snapshot together with the progress
+        progress.setEvictionListener(uuid -> {
+            if (Bukkit.getPlayer(uuid) == null) snapshots.remove(uuid);
+        });
+
+        // players already online (reload)
+        for (Player online : Bukkit.getOnlinePlayers()) {
+            UUID uuid = online.getUniqueId();
+            progress.loadAsync(uuid, pp -> publish(uuid));
+        }
+    }
+
+    // ===== Marker residency follows chunk loading =====
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent event) {
+        markers.chunkLoaded(event.getChunk());
+    }
 
-        // progress file
-        this.progressFile = new File(plugin.getDataFolder(), "pumpkinprogress.yml");
-        ensureFile(progressFile);
-        this.progressCfg = YamlConfiguration.loadConfiguration(progressFile);
-        loadProgress();
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        markers.chunkUnloaded(event.getChunk());
+    }
 
-        // block source file
-        this.blocksFile = new File(plugin.getDataFolder(), "pumpkinblocks.yml");
-        ensureFile(blocksFile);
-        this.blocksCfg = YamlConfiguration.loadConfiguration(blocksFile);
-        loadBlockMarkers();
+    @EventHandler
+    public void onWorldUnload(WorldUnloadEvent event) {
+        markers.worldUnloaded(event.getWorld());
     }
 
     // ===== Events to mark source =====
     @EventHandler
     public void onPumpkinPlaced(BlockPlaceEvent event) {
-        if (event.getBlockPlaced().getType() != Material.PUMPKIN) return;
-        String key = locKey(event.getBlockPlaced().getLocation());
-        placed.add(key);
-        grown.remove(key);
-        saveBlocks();
+        Block b = event.getBlockPlaced();
+        if (b.getType() != Material.PUMPKIN) return;
+        markers.markPlaced(b);
     }
 
     @EventHandler
     public void onPumpkinGrown(BlockGrowEvent event) {
         if (event.getNewState().getType() != Material.PUMPKIN) return;
-        String key = locKey(event.getBlock().getLocation());
-        grown.add(key);
-        placed.remove(key);
-        saveBlocks();
+        Block b = event.getBlock();
+        markers.markGrown(b);
     }
 
     @EventHandler
-    @SuppressWarnings("unchecked")
     public void onPumpkinBreak(BlockBreakEvent event) {
-        if (event.getBlock().getType() != Material.PUMPKIN) return;
-
-        Location loc = event.getBlock().getLocation();
-        String key = locKey(loc);
-        Source src = classify(key);
-
-        boolean allowPlaced  = phCfg.getBoolean("rules.count-player-placed", false);
-        boolean allowGrown   = phCfg.getBoolean("rules.count-grown", true);
-        boolean allowNatural = phCfg.getBoolean("rules.count-natural", true);
-
-        if ((src == Source.PLACED  && !allowPlaced) ||
-                (src == Source.GROWN   && !allowGrown) ||
-                (src == Source.NATURAL && !allowNatural)) {
-            placed.remove(key);
-            grown.remove(key);
-            saveBlocks();
+        Block block = event.getBlock();
+        if (block.getType() != Material.PUMPKIN) return;
+
+        Source src = classify(block);
+        ConfigSnapshot.PumpkinHunt settings = plugin.settings().hunt();
+
+        if ((src == Source.PLACED  && !settings.countPlaced()) ||
+                (src == Source.GROWN   && !settings.countGrown()) ||
+                (src == Source.NATURAL && !settings.countNatural())) {
+            markers.clear(block);
             return;
         }
 
         Player player = event.getPlayer();
 
+        // Progress first: with the store unreadable, no cooldown, no reward and no restart from 0
+        PlayerProgress pp = progress.getOrCreate(player.getUniqueId());
+        if (pp == null) {
+            markers.clear(block);
+            return;
+        }
+
         // Optional cooldown reuse (comment/remove if not wanted here)
         long cdSec = Math.max(0, plugin.getCooldown(player));
         if (cdSec > 0 && !player.hasPermission("trickortreat.cooldown.bypass")) {
-            UUID id = player.getUniqueId();
-            long now = System.currentTimeMillis();
-            Long last = plugin.getCooldowns().get(id);
-            long cdMs = cdSec * 1000L;
-            if (last != null && now - last < cdMs) {
-                long left = (cdMs - (now - last)) / 1000L;
-                player.sendMessage("§cYou are on cooldown. Please wait " + left + " seconds.");
-                placed.remove(key);
-                grown.remove(key);
-                saveBlocks();
+            long leftMs = cooldown.tryAcquire(player.getUniqueId(), cdSec * 1000L);
+            if (leftMs > 0) {
+                player.sendMessage("§cYou are on cooldown. Please wait " + (leftMs / 1000L) + " seconds.");
+                markers.clear(block);
                 return;
             }
-            plugin.getCooldowns().put(id, now);
         }
 
         // Always give a random small reward per break (as before)
-        List<?> rewardList = phCfg.getList("pumpkin-rewards");
-        if (rewardList != null && !rewardList.isEmpty()) {
-            Object picked = rewardList.get(ThreadLocalRandom.current().nextInt(rewardList.size()));
-            Map<String, Object> reward = toFlatMap(picked);
-            if (reward != null) runReward(player, reward);
+        CompiledReward[] breakRewards = settings.breakRewards();
+        if (breakRewards.length > 0) {
+            breakRewards[ThreadLocalRandom.current().nextInt(breakRewards.length)].give(plugin.getRewardServices(), player);
         }
 
         // Update totals & level rewards
-        PlayerProgress pp = progress.computeIfAbsent(player.getUniqueId(), k -> new PlayerProgress());
         pp.totalBroken++;
-        applyLeveling(player, pp); // may award per-level / big-win
-        saveProgress();
+        applyLeveling(player, pp, settings); // may award per-level / big-win
+        progress.markDirty(player.getUniqueId(), pp);
+        publish(player.getUniqueId());
+        leaderboard.update(player.getUniqueId(), player.getName(), pp.totalBroken);
 
         // remove marker after break
-        placed.remove(key);
-        grown.remove(key);
-        saveBlocks();
+        markers.clear(block);
     }
 
     // ===== Level logic =====
-    private void applyLeveling(Player player, PlayerProgress pp) {
-        if (!phCfg.getBoolean("levels.enabled", false)) {
+    private void applyLeveling(Player player, PlayerProgress pp, ConfigSnapshot.PumpkinHunt settings) {
+        LevelCurve levelCurve = settings.levelCurve();
+        if (!settings.levelsEnabled()) {
             // legacy single-level behavior
-            int target = Math.max(1, phCfg.getInt("total-pumpkins", 10));
+            int target = levelCurve.target(0);
             // award once when crossing target (simulate 'levels' with one level)
             if (pp.levelsAwarded == 0 && pp.totalBroken >= target) {
-                doPerLevelWin(player);
+                settings.perLevelWin().give(plugin.getRewardServices(), player);
                 pp.levelsAwarded = 1;
-                // also trigger big-win for legacy 'win-event'
-                doBigWinLegacy(player);
+                // also trigger big-win for legacy 'win-event' (used when levels.enabled = false)
+                settings.winEvent().give(plugin.getRewardServices(), player);
                 pp.bigWinAwarded = true;
             }
             return;
         }
 
-        int count = Math.max(1, phCfg.getInt("levels.count", 1));
-        int[] targets = buildTargets(count);
+        int count = levelCurve.count();
 
-        // compute how many thresholds the total has crossed
-        int completedLevels = thresholdsCrossed(pp.totalBroken, targets);
+        // how many thresholds the total has crossed (binary search / closed form)
+        int completedLevels = levelCurve.crossed(pp.totalBroken);
 
         // Award any newly crossed levels (one-time)
-        while (pp.levelsAwarded < Math.min(completedLevels, count)) {
-            doPerLevelWin(player);
+        while (pp.levelsAwarded < completedLevels) {
+            settings.perLevelWin().give(plugin.getRewardServices(), player);
             pp.levelsAwarded++;
         }
 
-        // Big win once after all levels reached
+        // Big win once after all levels reached (never for unbounded curves)
         if (!pp.bigWinAwarded && completedLevels >= count) {
-            doBigWin(player);
+            settings.bigWin().give(plugin.getRewardServices(), player);
             pp.bigWinAwarded = true;
         }
     }
 
-    private int[] buildTargets(int count) {
-        List<Integer> list = phCfg.getIntegerList("levels.targets");
-        int fallback = Math.max(1, phCfg.getInt("total-pumpkins", 10));
-        int[] t = new int[count];
-        for (int i = 0; i < count; i++) {
-            t[i] = (i < list.size() && list.get(i) != null && list.get(i) > 0) ? list.get(i) : fallback;
-        }
-        return t;
-    }
-
-    private int thresholdsCrossed(int total, int[] targets) {
-        int crossed = 0;
-        int sum = 0;
-        for (int target : targets) {
-            sum += target;
-            if (total >= sum) crossed++;
-            else break;
-        }
-        return crossed;
-    }
-
-    private void doPerLevelWin(Player player) {
-        ConfigurationSection sec = phCfg.getConfigurationSection("levels.per-level-win");
-        if (sec == null) return;
-        runReward(player, sec.getValues(false));
-    }
-
-    private void doBigWin(Player player) {
-        ConfigurationSection sec = phCfg.getConfigurationSection("levels.big-win");
-        if (sec == null) return;
-        runReward(player, sec.getValues(false));
-    }
-
-    private void doBigWinLegacy(Player player) {
-        // used when levels.enabled = false
-        ConfigurationSection sec = phCfg.getConfigurationSection("win-event");
-        if (sec == null) return;
-        runReward(player, sec.getValues(false));
-    }
-
     // ===== Public API for command/placeholder =====
 
     /** total pumpkins broken by the player (keeps increasing forever) */
@@ -220,34 +212,37 @@ public class PumpkinHuntHandler implements Listener {
 
     /** current level index (0-based) – capped at last level when finished */
     public int getCurrentLevelIndex(UUID uuid) {
-        if (!phCfg.getBoolean("levels.enabled", false)) {
-            // legacy: 0 or 1 (finished)
-            int total = getTotal(uuid);
-            int target = Math.max(1, phCfg.getInt("total-pumpkins", 10));
-            return (total >= target) ? 0 : 0; // always 0 in legacy mode
-        }
-        int count = Math.max(1, phCfg.getInt("levels.count", 1));
-        int[] targets = buildTargets(count);
-        int crossed = thresholdsCrossed(getTotal(uuid), targets);
+        return levelIndex(getTotal(uuid));
+    }
+
+    private int levelIndex(int total) {
+        ConfigSnapshot.PumpkinHunt settings = plugin.settings().hunt();
+        if (!settings.levelsEnabled()) return 0; // always 0 in legacy mode
+        LevelCurve levelCurve = settings.levelCurve();
+        int crossed = levelCurve.crossed(total);
         // current level is min(crossed, count - 1)
-        return Math.min(crossed, count - 1);
+        return Math.min(crossed, levelCurve.count() - 1);
     }
 
-    /** how many levels configured (returns 1 when levels disabled) */
+    /** how many levels configured (returns 1 when levels disabled, LevelCurve.UNBOUNDED for open-ended curves) */
     public int getTotalLevels() {
-        if (!phCfg.getBoolean("levels.enabled", false)) return 1;
-        return Math.max(1, phCfg.getInt("levels.count", 1));
+        return plugin.settings().hunt().levelCurve().count();
+    }
+
+    /** "L/N", or "L/∞" for unbounded curves */
+    public String getLevelDisplay(UUID uuid) {
+        return levelDisplay(getTotal(uuid));
+    }
+
+    private String levelDisplay(int total) {
+        int lvl = levelIndex(total) + 1;
+        LevelCurve levelCurve = plugin.settings().hunt().levelCurve();
+        return lvl + "/" + (levelCurve.unbounded() ? "∞" : String.valueOf(levelCurve.count()));
     }
 
     /** target for current (or last) level, used to build X/Y in UI */
     public int getCurrentLevelTarget(UUID uuid) {
-        if (!phCfg.getBoolean("levels.enabled", false)) {
-            return Math.max(1, phCfg.getInt("total-pumpkins", 10));
-        }
-        int count = getTotalLevels();
-        int[] targets = buildTargets(count);
-        int idx = getCurrentLevelIndex(uuid);
-        return targets[Math.max(0, Math.min(idx, targets.length - 1))];
+        return plugin.settings().hunt().levelCurve().target(getCurrentLevelIndex(uuid));
     }
 
     /** Returns X/Y string as requested:
@@ -255,186 +250,138 @@ public class PumpkinHuntHandler implements Listener {
      *  - After finishing all levels: total/(last level target) e.g. 50/30
      */
     public String getDisplayProgress(UUID uuid) {
-        int total = getTotal(uuid);
-        if (!phCfg.getBoolean("levels.enabled", false)) {
-            int target = Math.max(1, phCfg.getInt("total-pumpkins", 10));
-            return total + "/" + target;
-        }
+        return displayProgress(getTotal(uuid));
+    }
 
-        int count = getTotalLevels();
-        int[] targets = buildTargets(count);
+    private String displayProgress(int total) {
+        ConfigSnapshot.PumpkinHunt settings = plugin.settings().hunt();
+        LevelCurve levelCurve = settings.levelCurve();
+        if (!settings.levelsEnabled()) {
+            return total + "/" + levelCurve.target(0);
+        }
 
-        int crossed = thresholdsCrossed(total, targets);
+        int count = levelCurve.count();
+        int crossed = levelCurve.crossed(total);
         if (crossed >= count) {
             // finished: show total / lastTarget
-            int lastTarget = targets[count - 1];
-            return total + "/" + lastTarget;
+            return total + "/" + levelCurve.target(count - 1);
         } else {
             // show progress within current level
-            int sumPrev = 0;
-            for (int i = 0; i < crossed; i++) sumPrev += targets[i];
-            int curTarget = targets[crossed];
-            int curProgress = Math.max(0, total - sumPrev);
-            return curProgress + "/" + curTarget;
+            long curProgress = Math.max(0, total - levelCurve.start(crossed));
+            return curProgress + "/" + levelCurve.target(crossed);
         }
     }
 
-    // ===== persistence types =====
-
-    private static class PlayerProgress {
-        int totalBroken = 0;
-        int levelsAwarded = 0; // number of per-level wins already granted
-        boolean bigWinAwarded = false;
+    public PumpkinLeaderboard getLeaderboard() {
+        return leaderboard;
     }
 
-    // ===== helpers (unchanged from your previous handler) =====
+    // ===== Store access (HuntDataTransfer, /tt winners) =====
 
-    private enum Source { PLACED, GROWN, NATURAL }
+    ProgressCache progressCache() {
+        return progress;
+    }
 
-    private Source classify(String key) {
-        if (placed.contains(key)) return Source.PLACED;
-        if (grown.contains(key))  return Source.GROWN;
-        return Source.NATURAL;
+    MarkerStore markerStore() {
+        return markers;
     }
 
-    private String locKey(Location loc) {
-        World w = loc.getWorld();
-        return (w == null ? "world" : w.getName()) + ":" + loc.getBlockX() + ":" + loc.getBlockY() + ":" + loc.getBlockZ();
+    /** Any thread: an imported row replaced this player's stored progress. */
+    void progressImported(UUID uuid, PlayerProgress pp) {
+        leaderboard.update(uuid, null, pp.totalBroken);
     }
 
-    private void ensureFile(File f) {
-        try {
-            if (!f.exists()) {
-                f.getParentFile().mkdirs();
-                f.createNewFile();
-            }
-        } catch (IOException e) {
-            plugin.getLogger().warning("Could not create file: " + f.getName() + " - " + e.getMessage());
-        }
+    /** Main thread: a resident player's progress was replaced by an import. */
+    void residentImported(UUID uuid) {
+        publish(uuid);
     }
 
-    private void loadBlockMarkers() {
-        try {
-            List<String> p = blocksCfg.getStringList("placed");
-            List<String> g = blocksCfg.getStringList("grown");
-            if (p != null) placed.addAll(p);
-            if (g != null) grown.addAll(g);
-            plugin.getLogger().info("Loaded pumpkin markers: placed=" + placed.size() + ", grown=" + grown.size());
-        } catch (Exception e) {
-            plugin.getLogger().warning("Failed to load pumpkin block markers: " + e.getMessage());
-        }
+    // ===== Placeholder snapshots =====
+
+    /** Lock-free read for placeholders (any thread); players without progress share one snapshot. */
+    public PlaceholderSnapshot getSnapshot(UUID uuid) {
+        PlaceholderSnapshot snap = snapshots.get(uuid);
+        return snap != null ? snap : emptySnapshot;
     }
 
-    private void saveBlocks() {
-        try {
-            blocksCfg.set("placed", new ArrayList<>(placed));
-            blocksCfg.set("grown", new ArrayList<>(grown));
-            blocksCfg.save(blocksFile);
-        } catch (IOException e) {
-            plugin.getLogger().warning("Failed to save pumpkin block markers: " + e.getMessage());
-        }
+    private PlaceholderSnapshot render(int total) {
+        return new PlaceholderSnapshot(displayProgress(total), String.valueOf(total), levelDisplay(total));
     }
 
-    private void loadProgress() {
-        try {
-            for (String key : progressCfg.getKeys(false)) {
-                try {
-                    UUID uuid = UUID.fromString(key);
-                    // Back-compat: allow int OR section
-                    if (progressCfg.isInt(key)) {
-                        PlayerProgress pp = new PlayerProgress();
-                        pp.totalBroken = progressCfg.getInt(key);
-                        progress.put(uuid, pp);
-                    } else if (progressCfg.isConfigurationSection(key)) {
-                        ConfigurationSection s = progressCfg.getConfigurationSection(key);
-                        PlayerProgress pp = new PlayerProgress();
-                        pp.totalBroken = s.getInt("total", 0);
-                        pp.levelsAwarded = s.getInt("awarded", 0);
-                        pp.bigWinAwarded = s.getBoolean("bigwin", false);
-                        progress.put(uuid, pp);
-                    }
-                } catch (IllegalArgumentException ignored) { }
-            }
-            plugin.getLogger().info("Loaded pumpkin progress for " + progress.size() + " player(s).");
-        } catch (Exception e) {
-            plugin.getLogger().warning("Failed to load pumpkin progress: " + e.getMessage());
-        }
+    /** Main thread, after a reload: levels may have changed, so every rendered snapshot is rebuilt. */
+    void settingsChanged() {
+        emptySnapshot = render(0);
+        for (UUID uuid : snapshots.keySet()) publish(uuid);
     }
 
-    public void saveProgress() {
-        try {
-            // clear then rewrite
-            for (String k : new HashSet<>(progressCfg.getKeys(false))) {
-                progressCfg.set(k, null);
-            }
-            for (Map.Entry<UUID, PlayerProgress> e : progress.entrySet()) {
-                PlayerProgress pp = e.getValue();
-                String key = e.getKey().toString();
-                progressCfg.set(key + ".total", pp.totalBroken);
-                progressCfg.set(key + ".awarded", pp.levelsAwarded);
-                progressCfg.set(key + ".bigwin", pp.bigWinAwarded);
-            }
-            progressCfg.save(progressFile);
-        } catch (IOException e) {
-            plugin.getLogger().warning("Failed to save pumpkin progress: " + e.getMessage());
+    /** Main thread: re-render after the player's progress changed. */
+    private void publish(UUID uuid) {
+        PlayerProgress pp = progress.get(uuid);
+        if (pp == null) snapshots.remove(uuid);
+        else snapshots.put(uuid, render(pp.totalBroken));
+    }
+
+    /**
+     * Snapshot for a player that may be offline (any thread). If nothing is resident the empty snapshot is
+     * returned and the progress is loaded in the background; later requests see the real values.
+     */
+    public PlaceholderSnapshot getOfflineSnapshot(UUID uuid) {
+        PlaceholderSnapshot snap = snapshots.get(uuid);
+        if (snap != null) return snap;
+        if (offlineLoads.add(uuid)) {
+            // pp is null when the load failed; clearing the flag lets a later request retry
+            Bukkit.getScheduler().runTask(plugin, () -> progress.loadAsync(uuid, pp -> {
+                offlineLoads.remove(uuid);
+                publish(uuid);
+            }));
         }
+        return emptySnapshot;
     }
 
-    public void saveState() {
-        saveProgress();
-        saveBlocks();
+    // ===== Progress residency follows the player =====
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        progress.preload(event.getUniqueId()); // async thread: blocking read is fine here
     }
 
-    // reward helpers (same as before)
-    private Map<String, Object> toFlatMap(Object obj) {
-        if (obj instanceof Map) return (Map<String, Object>) obj;
-        if (obj instanceof ConfigurationSection) return ((ConfigurationSection) obj).getValues(false);
-        return null;
+    @EventHandler
+    public void onJoin(PlayerJoinEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        progress.joined(uuid);
+        if (progress.isResident(uuid)) publish(uuid);
+        else progress.loadAsync(uuid, pp -> publish(uuid));
     }
 
-    private void runReward(Player player, Map<String, Object> data) {
-        if (data == null) return;
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        progress.quit(uuid);
+        snapshots.remove(uuid);
+    }
 
-        String command = String.valueOf(data.getOrDefault("command", ""));
-        if (!command.isEmpty()) {
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command.replace("%player%", player.getName()));
-        }
+    // ===== helpers (unchanged from your previous handler) =====
 
-        String message = String.valueOf(data.getOrDefault("message", ""));
-        if (!message.isEmpty()) player.sendMessage(message);
+    private enum Source { PLACED, GROWN, NATURAL }
 
-        Object eventObj = data.get("event");
-        Map<String, Object> evt = null;
-        if (eventObj instanceof Map) {
-            evt = ((Map<?, ?>) eventObj).entrySet().stream()
-                    .collect(Collectors.toMap(e -> String.valueOf(e.getKey()), e -> (Object) e.getValue()));
-        } else if (eventObj instanceof ConfigurationSection) {
-            evt = ((ConfigurationSection) eventObj).getValues(false);
+    private Source classify(Block block) {
+        switch (markers.lookup(block)) {
+            case MarkerStore.PLACED: return Source.PLACED;
+            case MarkerStore.GROWN:  return Source.GROWN;
+            default:                 return Source.NATURAL;
         }
+    }
 
-        if (evt != null) {
-            Object sound = evt.get("sound");
-            if (sound instanceof String s) playSoundSmart(player, s);
-            if (Boolean.TRUE.equals(evt.get("firework"))) {
-                player.getWorld().spawn(player.getLocation(), Firework.class);
-            }
-        }
+    /** Flush pending progress and markers to disk (synchronous). */
+    public void saveState() {
+        progress.flush();
+        markers.flush();
     }
 
-    private void playSoundSmart(Player player, String key) {
-        if (key == null || key.isEmpty()) return;
-        try {
-            Sound s = Sound.valueOf(key.toUpperCase(Locale.ROOT));
-            player.getWorld().playSound(player.getLocation(), s, 1.0F, 1.0F);
-            return;
-        } catch (IllegalArgumentException ignored) { }
-        String candidate = key;
-        int colon = candidate.indexOf(':');
-        if (colon >= 0 && colon + 1 < candidate.length()) candidate = candidate.substring(colon + 1);
-        candidate = candidate.replace('.', '_').toUpperCase(Locale.ROOT);
-        try {
-            Sound s2 = Sound.valueOf(candidate);
-            player.getWorld().playSound(player.getLocation(), s2, 1.0F, 1.0F);
-        } catch (IllegalArgumentException ignored) { }
+    /** Final save on disable/reload: stops the background progress writer. */
+    public void close() {
+        sweeper.close();
+        progress.close();
+        markers.close();
     }
 }
@@ -0,0 +1,328 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Pumpkin leaderboard as an order-statistic treap ordered by total (highest first, ties by UUID).
+ * Every node knows its subtree size, so update, rank(uuid) and entry-at-rank are all O(log n).
+ *
+ * Updated from onPumpkinBreak on the main thread, seeded from storage on an async task,
+ * read by placeholders from any thread (read/write lock). Players with a total of 0 are not ranked.
+ * Names of players added without one (seeded, imported) are looked up on the main thread a few per tick,
+ * never under the lock; until then they show as the start of their UUID.
+ */
+final class PumpkinLeaderboard {
+
+    record Entry(UUID uuid, String name, int total) { }
+
+    private static final class Node {
+        final UUID uuid;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        int total;
+        int size = 1;
+        Node left, right;
+        volatile String name; // null until known (see resolveNames)
+
+        Node(UUID uuid, int total, String name) {
+            this.uuid = uuid;
+            this.total = total;
+            this.name = name;
+        }
+    }
+
+    private static final int NAMES_PER_TICK = 50;
+
+    private final Plugin plugin;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Node> byPlayer = new HashMap<>();
+    private Node root;
+
+    // split results (write lock held)
+    private Node splitLeft, splitRight;
+
+    private final Queue<UUID> unnamed = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean resolving = new AtomicBoolean(false);
+
+    PumpkinLeaderboard(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /* =========================
+       Updates
+       ========================= */
+
+    /** Sets the player's total (insert, move or no-op). */
+    void update(UUID uuid, String name, int total) {
+        lock.writeLock().lock();
+        try {
+            Node n = byPlayer.get(uuid);
+            if (n != null) {
+                if (name != null) n.name = name;
+                if (n.total == total) return;
+                detach(n);
+                if (total <= 0) {
+                    byPlayer.remove(uuid);
+                    return;
+                }
+                n.total = total;
+                n.left = n.right = null;
+                n.size = 1;
+                attach(n);
+            } else if (total > 0) {
+                n = new Node(uuid, total, name);
+                byPlayer.put(uuid, n);
+                attach(n);
+                if (name == null) unnamed.add(uuid);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!unnamed.isEmpty()) resolveNames();
+    }
+
+    /** Inserts a stored total unless the player is already on the board (live updates win). */
+    void seed(UUID uuid, int total) {
+        if (total <= 0) return;
+        lock.writeLock().lock();
+        try {
+            if (byPlayer.containsKey(uuid)) return;
+            Node n = new Node(uuid, total, null);
+            byPlayer.put(uuid, n);
+            attach(n);
+            unnamed.add(uuid);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        resolveNames();
+    }
+
+    /* =========================
+       Names (main thread, outside the lock)
+       ========================= */
+
+    /** Any thread: makes sure the resolver task runs while names are missing. */
+    private void resolveNames() {
+        if (!resolving.compareAndSet(false, true)) return;
+        if (!plugin.isEnabled()) {
+            resolving.set(false);
+            return;
+        }
+        BukkitTask[] task = new BukkitTask[1];
+        task[0] = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+            for (int i = 0; i < NAMES_PER_TICK; i++) {
+                UUID uuid = unnamed.poll();
+                if (uuid == null) {
+                    task[0].cancel();
+                    resolving.set(false);
+                    if (!unnamed.isEmpty()) resolveNames(); // added between poll and set
+                    return;
+                }
+                String name = Bukkit.getOfflinePlayer(uuid).getName();
+                if (name == null) continue;
+                Node n;
+                lock.readLock().lock();
+                try {
+                    n = byPlayer.get(uuid);
+                } finally {
+                    lock.readLock().unlock();
+                }
+                if (n != null && n.name == null) n.name = name; // a live update may have set it meanwhile
+            }
+        }, 1L, 1L);
+    }
+
+    /* =========================
+       Queries
+       ========================= */
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return byPlayer.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** 1-based rank, or 0 when the player has no pumpkins yet. */
+    int rank(UUID uuid) {
+        lock.readLock().lock();
+        try {
+            Node n = byPlayer.get(uuid);
+            if (n == null) return 0;
+            int rank = 0;
+            Node t = root;
+            while (t != null) {
+                int c = compare(n, t);
+                if (c < 0) {
+                    t = t.left;
+                } else {
+                    rank += size(t.left) + 1;
+                    if (c == 0) return rank;
+                    t = t.right;
+                }
+            }
+            return 0; // unreachable while the map and the tree agree
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Entry at a 1-based rank, or null past the end. */
+    Entry at(int rank) {
+        lock.readLock().lock();
+        try {
+            Node n = select(rank);
+            return n == null ? null : new Entry(n.uuid, nameOf(n), n.total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Name at a 1-based rank ("-" past the end). */
+    String nameAt(int rank) {
+        lock.readLock().lock();
+        try {
+            Node n = select(rank);
+            return n == null ? "-" : nameOf(n);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Total at a 1-based rank (0 past the end). */
+    int totalAt(int rank) {
+        lock.readLock().lock();
+        try {
+            Node n = select(rank);
+            return n == null ? 0 : n.total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** The first n entries, highest first. */
+    List<Entry> top(int n) {
+        List<Entry> out = new ArrayList<>(Math.max(0, Math.min(n, 100)));
+        lock.readLock().lock();
+        try {
+            collect(root, n, out);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return out;
+    }
+
+    /* =========================
+       Treap internals
+       ========================= */
+
+    private static int size(Node t) {
+        return t == null ? 0 : t.size;
+    }
+
+    private static void pull(Node t) {
+        t.size = 1 + size(t.left) + size(t.right);
+    }
+
+    /** Highest total first; ties broken by UUID so every key is unique. */
+    private static int compare(Node a, Node b) {
+        if (a.total != b.total) return a.total > b.total ? -1 : 1;
+        return a.uuid.compareTo(b.uuid);
+    }
+
+    private Node select(int rank) {
+        if (rank < 1 || rank > size(root)) return null;
+        Node t = root;
+        while (t != null) {
+            int leftSize = size(t.left);
+            if (rank <= leftSize) {
+                t = t.left;
+            } else if (rank == leftSize + 1) {
+                return t;
+            } else {
+                rank -= leftSize + 1;
+                t = t.right;
+            }
+        }
+        return null;
+    }
+
+    private static String nameOf(Node n) {
+        String name = n.name;
+        return name != null ? name : n.uuid.toString().substring(0, 8);
+    }
+
+    private static void collect(Node t, int limit, List<Entry> out) {
+        if (t == null || out.size() >= limit) return;
+        collect(t.left, limit, out);
+        if (out.size() >= limit) return;
+        out.add(new Entry(t.uuid, nameOf(t), t.total));
+        collect(t.right, limit, out);
+    }
+
+    private void attach(Node n) {
+        split(root, n);
+        Node l = splitLeft, r = splitRight;
+        root = merge(merge(l, n), r);
+    }
+
+    private void detach(Node n) {
+        split(root, n);              // n is the smallest key of the right part
+        Node l = splitLeft;
+        Node r = removeFirst(splitRight);
+        root = merge(l, r);
+    }
+
+    /** Splits t into keys < k (splitLeft) and keys >= k (splitRight). */
+    private void split(Node t, Node k) {
+        if (t == null) {
+            splitLeft = splitRight = null;
+            return;
+        }
+        if (compare(t, k) < 0) {
+            split(t.right, k);
+            t.right = splitLeft;
+            pull(t);
+            splitLeft = t;
+        } else {
+            split(t.left, k);
+            t.left = splitRight;
+            pull(t);
+            splitRight = t;
+        }
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            pull(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        pull(b);
+        return b;
+    }
+
+    private static Node removeFirst(Node t) {
+        if (t.left == null) return t.right;
+        t.left = removeFirst(t.left);
+        pull(t);
+        return t;
+    }
+}
@@ -0,0 +1,127 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * One step of a {@link CompiledReward}, run directly through the Bukkit API where possible.
+ *
+ * Declared under actions: (all run) or random-actions: (one picked) in a reward section:
+ *   - { type: item,    material: cookie, amount: 5 }                 same as "give %player% cookie 5"
+ *   - { type: effect,  effect: slowness, seconds: 10, amplifier: 1 } same as "effect give %player% slowness 10 1"
+ *   - { type: xp,      amount: 1000 }  (levels: true for levels)     same as "xp add %player% 1000"
+ *   - { type: command, command: "..." }                              queued console command (anything else)
+ * Items and effects are built once at load; running an item action only clones the prototype.
+ */
+interface RewardAction {
+
+    void run(Player player, CompiledReward.Services services);
+
+    /** Gives a copy of the prototype; what does not fit is dropped at the player's feet, like /give. */
+    record GiveItem(ItemStack prototype) implements RewardAction {
+        @Override
+        public void run(Player player, CompiledReward.Services services) {
+            for (ItemStack left : player.getInventory().addItem(prototype.clone()).values()) {
+                player.getWorld().dropItem(player.getLocation(), left);
+            }
+        }
+    }
+
+    /** PotionEffect is immutable, so one instance is shared by every run. */
+    record ApplyEffect(PotionEffect effect) implements RewardAction {
+        @Override
+        public void run(Player player, CompiledReward.Services services) {
+            player.addPotionEffect(effect);
+        }
+    }
+
+    record GrantXp(int amount, boolean levels) implements RewardAction {
+        @Override
+        public void run(Player player, CompiledReward.Services services) {
+            if (levels) player.giveExpLevels(amount);
+            else player.giveExp(amount);
+        }
+    }
+
+    /** Fallback for everything without a native action: rendered per player and queued (see RewardCommandQueue). */
+    record RunCommand(CompiledReward.CommandTemplate template) implements RewardAction {
+        @Override
+        public void run(Player player, CompiledReward.Services services) {
+            services.commands().submit(player.getUniqueId(), template.render(player.getName()));
+        }
+    }
+
+    /* =========================
+       Compiling
+       ========================= */
+
+    /** @return null (after a warning) when the entry is invalid */
+    static RewardAction compile(Object raw, String where, Logger log) {
+        Map<?, ?> data = raw instanceof ConfigurationSection s ? s.getValues(false) : raw instanceof Map<?, ?> m ? m : null;
+        if (data == null) {
+            log.warning(where + ": expected a section with a type, ignoring it.");
+            return null;
+        }
+        String type = String.valueOf(data.get("type")).toLowerCase(Locale.ROOT);
+        switch (type) {
+            case "item": {
+                Material material = KeyResolver.material(String.valueOf(data.get("material")), where, log);
+                if (material == null) return null;
+                if (!material.isItem()) {
+                    log.warning(where + ": " + material + " is not an item, ignoring it.");
+                    return null;
+                }
+                return new GiveItem(new ItemStack(material, Math.max(1, intOf(data.get("amount"), 1))));
+            }
+            case "effect": {
+                PotionEffectType effect = KeyResolver.effect(String.valueOf(data.get("effect")), where, log);
+                if (effect == null) return null;
+                int ticks = Math.max(1, intOf(data.get("seconds"), 30)) * 20;
+                return new ApplyEffect(new PotionEffect(effect, ticks, Math.max(0, intOf(data.get("amplifier"), 0))));
+            }
+            case "xp":
+                return new GrantXp(intOf(data.get("amount"), 0), Boolean.TRUE.equals(data.get("levels")));
+            case "command": {
+                Object command = data.get("command");
+                if (command == null || String.valueOf(command).isEmpty()) {
+                    log.warning(where + ": command action without a command, ignoring it.");
+                    return null;
+                }
+                return new RunCommand(new CompiledReward.CommandTemplate(String.valueOf(command)));
+            }
+            default:
+                log.warning(where + ": unknown action type '" + data.get("type") + "' (item, effect, xp, command), ignoring it.");
+                return null;
+        }
+    }
+
+    static List<RewardAction> compileAll(Object raw, String where, Logger log) {
+        List<RewardAction> out = new ArrayList<>();
+        if (!(raw instanceof List<?> list)) return out;
+        for (int i = 0; i < list.size(); i++) {
+            RewardAction a = compile(list.get(i), where + "[" + i + "]", log);
+            if (a != null) out.add(a);
+        }
+        return out;
+    }
+
+    private static int intOf(Object o, int def) {
+        if (o instanceof Number n) return n.intValue();
+        if (o == null) return def;
+        try {
+            return Integer.parseInt(String.valueOf(o).trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Console commands from rewards, run a few per tick instead of all inline in the event handler.
+ *
+ * Each player has a FIFO of pending commands (their rewards run in order); players are served round-robin,
+ * so one boss kill with many commands does not hold back everyone else's pumpkin rewards.
+ * Each tick drains until budget-nanos-per-tick is used up (always at least one command).
+ * Main thread only. Owned by the plugin, so a reload does not drop pending commands;
+ * {@link #flush()} runs whatever is left on disable.
+ */
+final class RewardCommandQueue {
+    /** Snapshot for /tt queue. Wait times are from submit to dispatch. */
+    record Metrics(int depth, int maxDepth, long dispatched, long avgWaitMicros, long maxWaitMicros) { }
+
+    private static final UUID CONSOLE = new UUID(0L, 0L);
+
+    private record Pending(String command, long queuedAt) { }
+
+    private final TrickOrTreatPlugin plugin;
+    private long budgetNanos;
+
+    // insertion order = round-robin order; a player is re-appended after being served
+    private final LinkedHashMap<UUID, ArrayDeque<Pending>> perPlayer = new LinkedHashMap<>();
+    private BukkitTask task;
+
+    // metrics
+    private int depth;
+    private int maxDepth;
+    private long dispatched;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    RewardCommandQueue(TrickOrTreatPlugin plugin, ConfigurationSection cfg) {
+        this.plugin = plugin;
+        configure(cfg);
+    }
+
+    /** reward-commands section of config.yml (re-read on reload; pending commands are kept). */
+    void configure(ConfigurationSection cfg) {
+        this.budgetNanos = Math.max(0L, cfg != null ? cfg.getLong("budget-nanos-per-tick", 2_000_000L) : 2_000_000L);
+    }
+
+    /** Queues a console command on behalf of a player (null for none); runs on a later tick. */
+    void submit(UUID player, String command) {
+        perPlayer.computeIfAbsent(player != null ? player : CONSOLE, k -> new ArrayDeque<>())
+                .addLast(new Pending(command, System.nanoTime()));
+        if (++depth > maxDepth) maxDepth = depth;
+        if (task == null) task = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+    }
+
+    Metrics metrics() {
+        return new Metrics(depth, maxDepth, dispatched,
+                dispatched == 0 ? 0 : totalWaitNanos / dispatched / 1000L, maxWaitNanos / 1000L);
+    }
+
+    /** Runs every pending command now (plugin disable). */
+    void flush() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        while (depth > 0) runNext();
+    }
+
+    private void drain() {
+        long start = System.nanoTime();
+        do {
+            runNext();
+        } while (depth > 0 && System.nanoTime() - start < budgetNanos);
+
+        if (depth == 0 && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /** Dispatches the head of the first player in line, then moves that player to the back. */
+    private void runNext() {
+        Iterator<Map.Entry<UUID, ArrayDeque<Pending>>> it = perPlayer.entrySet().iterator();
+        Map.Entry<UUID, ArrayDeque<Pending>> head = it.next();
+        ArrayDeque<Pending> q = head.getValue();
+        Pending p = q.pollFirst();
+        it.remove();
+        if (!q.isEmpty()) perPlayer.put(head.getKey(), q);
+        depth--;
+
+        long wait = System.nanoTime() - p.queuedAt();
+        totalWaitNanos += wait;
+        if (wait > maxWaitNanos) maxWaitNanos = wait;
+        dispatched++;
+        try {
+            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), p.command());
+        } catch (RuntimeException e) {
+            plugin.getLogger().warning("Reward command failed: /" + p.command() + " (" + e.getMessage() + ")");
+        }
+    }
+}
@@ -0,0 +1,722 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+/**
+ * Pumpkin source markers, sharded per world region (32x32 chunks, like vanilla region files).
+ * - Positions are bit-packed into a long (x:26 | z:26 | y:12, same layout as vanilla BlockPos)
+ *   and kept in primitive sets, so lookups and updates never build a string key.
+ * - A shard is read asynchronously when its first chunk loads and is dropped when its last chunk unloads;
+ *   only visited regions stay in memory.
+ * - Fallback: if a marker is queried before its shard finished loading (or for a region
+ *   with no loaded chunk), the shard is read synchronously on the spot.
+ *
+ * On disk every shard is a binary snapshot (r.X.Z.bin) plus an append-only journal (r.X.Z.log)
+ * of 9-byte add/remove records. Updates are buffered in memory, appended in one batch and fsync'ed
+ * every few ticks; the I/O thread folds the journal into a new snapshot once it grows past
+ * compact-after-ops and when the shard unloads. Loading replays snapshot + journal, so a crash
+ * loses at most the last unsynced batch.
+ * All methods except the I/O jobs run on the main thread.
+ */
+final class ShardedMarkerStore implements MarkerStore {
+    static final int REGION_SHIFT = 5; // chunks -> region
+
+    private static final int SNAPSHOT_MAGIC = 0x54544D4B; // "TTMK"
+    private static final byte SNAPSHOT_VERSION = 1;
+    private static final int RECORD_BYTES = 9;             // op + packed pos
+
+    private static final byte OP_CLEAR  = NONE;
+    private static final byte OP_PLACED = PLACED;
+    private static final byte OP_GROWN  = GROWN;
+
+    /** Receives markers, see {@link #forEachStored}. */
+    interface MarkerVisitor {
+        void visit(String world, long pos, boolean placed);
+    }
+
+    private record Loaded(LongHashSet placed, LongHashSet grown, int journalOps) { }
+
+    private record ShardFiles(File snapshot, File journal, File legacyYaml) { }
+
+    private record JournalBatch(ShardFiles files, byte[] ops, long[] positions) { }
+
+    private static final class Shard {
+        final String world;
+        final int rx, rz;
+        final ShardFiles files;
+        final LongHashSet placed = new LongHashSet();
+        final LongHashSet grown = new LongHashSet();
+        CompletableFuture<Loaded> pending; // null once merged
+        int loadedChunks;
+
+        // journal records not yet handed to the I/O thread
+        byte[] ops = new byte[16];
+        long[] positions = new long[16];
+        int opCount;
+        int journalOps; // records on disk since the last snapshot
+
+        Shard(String world, int rx, int rz, ShardFiles files) {
+            this.world = world;
+            this.rx = rx;
+            this.rz = rz;
+            this.files = files;
+        }
+    }
+
+    private static final class WorldShards {
+        final Map<Long, Shard> byRegion = new HashMap<>();
+        Shard last; // most recently used shard, saves the map lookup for clustered breaks
+    }
+
+    private final TrickOrTreatPlugin plugin;
+    private final File dir;
+    private final ExecutorService io;
+    private final Map<File, FileChannel> openJournals = new HashMap<>(); // I/O thread only
+    private final Map<String, WorldShards> worlds = new HashMap<>();
+    private final int compactAfterOps;
+    private BukkitTask flushTask;
+    private BukkitTask maintenanceTask;
+
+    ShardedMarkerStore(TrickOrTreatPlugin plugin, File dir, File legacyFile, ConfigSnapshot.MarkerStorage cfg) {
+        this.plugin = plugin;
+        this.dir = dir;
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "TrickOrTreat-markers");
+            t.setDaemon(true);
+            return t;
+        });
+        dir.mkdirs();
+
+        long flushTicks    = cfg.journalFlushTicks();
+        long maintenanceSec = cfg.maintenanceSeconds();
+        this.compactAfterOps = cfg.compactAfterOps();
+
+        migrateLegacy(legacyFile);
+
+        // chunks loaded before we were constructed (spawn chunks, /tt reload) never fire ChunkLoadEvent
+        for (World w : Bukkit.getWorlds()) {
+            for (Chunk c : w.getLoadedChunks()) chunkLoaded(w.getName(), c.getX(), c.getZ());
+        }
+
+        flushTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> flushJournal(false), flushTicks, flushTicks);
+        maintenanceTask = Bukkit.getScheduler().runTaskTimer(plugin, this::dropOrphans, 20L * maintenanceSec, 20L * maintenanceSec);
+    }
+
+    /* =========================
+       Packing
+       ========================= */
+
+    static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFFL);
+    }
+
+    static int unpackX(long pos) { return (int) (pos >> 38); }
+    static int unpackY(long pos) { return (int) (pos << 52 >> 52); }
+    static int unpackZ(long pos) { return (int) (pos << 26 >> 38); }
+
+    static long posOf(Block b) {
+        return pack(b.getX(), b.getY(), b.getZ());
+    }
+
+    /* =========================
+       Queries & updates
+       ========================= */
+
+    @Override
+    public int lookup(Block block) {
+        long pos = posOf(block);
+        Shard s = shardFor(block.getWorld().getName(), pos);
+        if (s.placed.contains(pos)) return PLACED;
+        if (s.grown.contains(pos))  return GROWN;
+        return NONE;
+    }
+
+    @Override
+    public void markPlaced(Block block) {
+        markPlaced(block.getWorld().getName(), posOf(block));
+    }
+
+    @Override
+    public void markGrown(Block block) {
+        markGrown(block.getWorld().getName(), posOf(block));
+    }
+
+    @Override
+    public void clear(Block block) {
+        clear(block.getWorld().getName(), posOf(block));
+    }
+
+    /** @return true if anything changed */
+    private boolean markPlaced(String world, long pos) {
+        Shard s = shardFor(world, pos);
+        boolean changed = s.placed.add(pos) | s.grown.remove(pos);
+        if (changed) journal(s, OP_PLACED, pos);
+        return changed;
+    }
+
+    /** @return true if anything changed */
+    private boolean markGrown(String world, long pos) {
+        Shard s = shardFor(world, pos);
+        boolean changed = s.grown.add(pos) | s.placed.remove(pos);
+        if (changed) journal(s, OP_GROWN, pos);
+        return changed;
+    }
+
+    /** @return true if a marker was removed */
+    private boolean clear(String world, long pos) {
+        Shard s = shardFor(world, pos);
+        boolean changed = s.placed.remove(pos) | s.grown.remove(pos);
+        if (changed) journal(s, OP_CLEAR, pos);
+        return changed;
+    }
+
+    /** One unit per resident shard; its positions are copied when the sweeper reaches it. */
+    @Override
+    public List<SweepUnit> sweepUnits() {
+        List<SweepUnit> out = new ArrayList<>();
+        for (Map.Entry<String, WorldShards> e : worlds.entrySet()) {
+            World world = Bukkit.getWorld(e.getKey());
+            if (world == null) continue;
+            for (Shard s : e.getValue().byRegion.values()) {
+                out.add(new SweepUnit(world, () -> {
+                    if (s.pending != null) return new long[0]; // still reading; next cycle
+                    long[] placed = s.placed.toArray(), grown = s.grown.toArray();
+                    long[] all = Arrays.copyOf(placed, placed.length + grown.length);
+                    System.arraycopy(grown, 0, all, placed.length, grown.length);
+                    return all;
+                }));
+            }
+        }
+        return out;
+    }
+
+    /* =========================
+       Chunk lifecycle
+       ========================= */
+
+    @Override
+    public void chunkLoaded(Chunk chunk) {
+        chunkLoaded(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+    }
+
+    @Override
+    public void chunkUnloaded(Chunk chunk) {
+        Shard s = resident(chunk.getWorld().getName(), chunk.getX() >> REGION_SHIFT, chunk.getZ() >> REGION_SHIFT);
+        if (s == null) return;
+        if (--s.loadedChunks <= 0) unload(s);
+    }
+
+    @Override
+    public void worldUnloaded(World world) {
+        WorldShards ws = worlds.get(world.getName());
+        if (ws == null) return;
+        for (Shard s : new ArrayList<>(ws.byRegion.values())) unload(s);
+    }
+
+    private void chunkLoaded(String world, int cx, int cz) {
+        int rx = cx >> REGION_SHIFT, rz = cz >> REGION_SHIFT;
+        Shard s = resident(world, rx, rz);
+        if (s == null) {
+            s = new Shard(world, rx, rz, shardFiles(world, rx, rz));
+            ShardFiles files = s.files;
+            s.pending = CompletableFuture.supplyAsync(() -> read(files), io);
+            Shard shard = s;
+            s.pending.thenRun(() -> {
+                if (plugin.isEnabled()) Bukkit.getScheduler().runTask(plugin, () -> merge(shard));
+            });
+            worlds.computeIfAbsent(world, k -> new WorldShards()).byRegion.put(regionKey(rx, rz), s);
+        }
+        s.loadedChunks++;
+    }
+
+    /* =========================
+       Saving
+       ========================= */
+
+    /** Append and fsync all buffered journal records, waiting for the write (used by saveState). */
+    @Override
+    public void flush() {
+        flushJournal(true);
+    }
+
+    /** Reads every shard on the I/O thread, queued behind the journal writes handed over here. */
+    @Override
+    public CompletableFuture<Void> streamAll(MarkerVisitor visitor) {
+        flushJournal(false);
+        return CompletableFuture.runAsync(() -> forEachStored(dir, plugin.getLogger(), visitor), io);
+    }
+
+    /**
+     * Folds each touched region on the I/O thread (snapshot + journal + import, like a compaction),
+     * queued behind the buffered journal records. Resident shards take the markers in memory too.
+     */
+    @Override
+    public CompletableFuture<Void> importMarkers(List<ImportChunk> batch) {
+        Map<String, Map<Long, List<ImportChunk>>> byRegion = new HashMap<>();
+        for (ImportChunk c : batch) {
+            byRegion.computeIfAbsent(c.world(), k -> new HashMap<>())
+                    .computeIfAbsent(regionKey(c.cx() >> REGION_SHIFT, c.cz() >> REGION_SHIFT), k -> new ArrayList<>())
+                    .add(c);
+        }
+        flushJournal(false);
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (Map.Entry<String, Map<Long, List<ImportChunk>>> w : byRegion.entrySet()) {
+            for (Map.Entry<Long, List<ImportChunk>> r : w.getValue().entrySet()) {
+                int rx = (int) (r.getKey() >> 32), rz = (int) (long) r.getKey();
+                List<ImportChunk> chunks = r.getValue();
+                Shard s = resident(w.getKey(), rx, rz);
+                if (s != null) {
+                    // the write below folds the journal, so nothing read so far counts towards compaction
+                    if (s.pending != null) {
+                        s.pending = s.pending.thenApply(d -> {
+                            importInto(d.placed(), d.grown(), chunks);
+                            return new Loaded(d.placed(), d.grown(), 0);
+                        });
+                    } else {
+                        importInto(s.placed, s.grown, chunks);
+                    }
+                    s.journalOps = 0;
+                }
+                ShardFiles files = s != null ? s.files : shardFiles(w.getKey(), rx, rz);
+                writes.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        compact(files, chunks);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, io));
+            }
+        }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]));
+    }
+
+    /** Final save: stop the timers, fold every resident journal into its snapshot and shut the I/O thread down. */
+    @Override
+    public void close() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        if (maintenanceTask != null) {
+            maintenanceTask.cancel();
+            maintenanceTask = null;
+        }
+        flushJournal(false);
+        for (WorldShards ws : worlds.values()) {
+            for (Shard s : ws.byRegion.values()) {
+                if (s.journalOps > 0) {
+                    ShardFiles files = s.files;
+                    io.execute(() -> compact(files));
+                }
+            }
+        }
+        worlds.clear();
+        io.execute(this::closeJournals);
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(30, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Timed out while saving pumpkin markers.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Hands every buffered record to the I/O thread as one batch (one fsync per touched journal). */
+    private void flushJournal(boolean wait) {
+        List<JournalBatch> batch = new ArrayList<>();
+        List<ShardFiles> toCompact = new ArrayList<>();
+        for (WorldShards ws : worlds.values()) {
+            for (Shard s : ws.byRegion.values()) {
+                if (s.opCount == 0) continue;
+                batch.add(takeOps(s));
+                if (s.journalOps >= compactAfterOps) {
+                    toCompact.add(s.files);
+                    s.journalOps = 0;
+                }
+            }
+        }
+        if (batch.isEmpty()) return;
+        Future<?> f = io.submit(() -> {
+            append(batch);
+            for (ShardFiles files : toCompact) compact(files);
+        });
+        if (wait) {
+            try { f.get(); } catch (Exception ignored) { }
+        }
+    }
+
+    /** Shards pulled in by the synchronous fallback have no loaded chunk; drop them again. */
+    private void dropOrphans() {
+        for (WorldShards ws : worlds.values()) {
+            for (Shard s : new ArrayList<>(ws.byRegion.values())) {
+                if (s.loadedChunks <= 0) unload(s);
+            }
+        }
+    }
+
+    /* =========================
+       Internals
+       ========================= */
+
+    private static long regionKey(int rx, int rz) {
+        return ((long) rx << 32) | (rz & 0xFFFFFFFFL);
+    }
+
+    private Shard resident(String world, int rx, int rz) {
+        WorldShards ws = worlds.get(world);
+        if (ws == null) return null;
+        Shard last = ws.last;
+        if (last != null && last.rx == rx && last.rz == rz) return last;
+        Shard s = ws.byRegion.get(regionKey(rx, rz));
+        if (s != null) ws.last = s;
+        return s;
+    }
+
+    /** Resident, fully loaded shard for pos; falls back to a synchronous read. */
+    private Shard shardFor(String world, long pos) {
+        int rx = unpackX(pos) >> (4 + REGION_SHIFT);
+        int rz = unpackZ(pos) >> (4 + REGION_SHIFT);
+        Shard s = resident(world, rx, rz);
+        if (s == null) {
+            // no loaded chunk announced this region (yet): read it now, maintenance drops it again.
+            // Reading through the I/O thread keeps it ordered after pending journal writes.
+            s = new Shard(world, rx, rz, shardFiles(world, rx, rz));
+            ShardFiles files = s.files;
+            s.pending = CompletableFuture.supplyAsync(() -> read(files), io);
+            worlds.computeIfAbsent(world, k -> new WorldShards()).byRegion.put(regionKey(rx, rz), s);
+        }
+        if (s.pending != null) merge(s); // waits for the read
+        return s;
+    }
+
+    private void merge(Shard s) {
+        if (s.pending == null) return;
+        Loaded d;
+        try {
+            d = s.pending.join();
+        } catch (CompletionException e) {
+            plugin.getLogger().warning("Failed to load pumpkin marker shard " + s.world + " r." + s.rx + "." + s.rz + ": " + e.getMessage());
+            d = new Loaded(new LongHashSet(), new LongHashSet(), 0);
+        }
+        s.pending = null;
+        d.placed().forEach(s.placed::add);
+        d.grown().forEach(s.grown::add);
+        s.journalOps += d.journalOps();
+    }
+
+    private void journal(Shard s, byte op, long pos) {
+        if (s.opCount == s.ops.length) {
+            s.ops = Arrays.copyOf(s.ops, s.opCount << 1);
+            s.positions = Arrays.copyOf(s.positions, s.opCount << 1);
+        }
+        s.ops[s.opCount] = op;
+        s.positions[s.opCount] = pos;
+        s.opCount++;
+    }
+
+    private JournalBatch takeOps(Shard s) {
+        JournalBatch b = new JournalBatch(s.files, Arrays.copyOf(s.ops, s.opCount), Arrays.copyOf(s.positions, s.opCount));
+        s.journalOps += s.opCount;
+        s.opCount = 0;
+        return b;
+    }
+
+    private void unload(Shard s) {
+        WorldShards ws = worlds.get(s.world);
+        if (ws != null) {
+            ws.byRegion.remove(regionKey(s.rx, s.rz));
+            if (ws.last == s) ws.last = null;
+        }
+        // a shard still loading has no records: every update resolves the read first
+        if (s.opCount == 0 && s.journalOps == 0) return;
+        JournalBatch b = s.opCount > 0 ? takeOps(s) : null;
+        ShardFiles files = s.files;
+        io.execute(() -> {
+            if (b != null) append(Collections.singletonList(b));
+            compact(files);
+        });
+    }
+
+    private ShardFiles shardFiles(String world, int rx, int rz) {
+        File worldDir = new File(dir, world);
+        String base = "r." + rx + "." + rz;
+        return new ShardFiles(new File(worldDir, base + ".bin"), new File(worldDir, base + ".log"), new File(worldDir, base + ".yml"));
+    }
+
+    /* =========================
+       File formats (I/O thread)
+       ========================= */
+
+    /** On the I/O thread, before anything is appended: also cuts a torn record off the journal tail. */
+    private Loaded read(ShardFiles f) {
+        Loaded loaded = read(f, plugin.getLogger());
+        trimTornTail(f.journal());
+        return loaded;
+    }
+
+    /** replay skips a partial last record; appending after it would misalign every record that follows. */
+    private void trimTornTail(File journal) {
+        long length = journal.length();
+        long whole = length / RECORD_BYTES * RECORD_BYTES;
+        if (whole == length) return;
+        try (FileChannel ch = FileChannel.open(journal.toPath(), StandardOpenOption.WRITE)) {
+            ch.truncate(whole);
+            plugin.getLogger().warning("Dropped a partial record at the end of pumpkin marker journal " + journal.getName() + ".");
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to trim pumpkin marker journal " + journal.getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static Loaded read(ShardFiles f, Logger log) {
+        LongHashSet placed = new LongHashSet();
+        LongHashSet grown = new LongHashSet();
+        try {
+            if (f.snapshot().exists()) readSnapshot(f.snapshot(), placed, grown);
+            else if (f.legacyYaml().exists()) readLegacyYaml(f.legacyYaml(), placed, grown);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        int ops = replay(f.journal(), placed, grown, log);
+        return new Loaded(placed, grown, ops);
+    }
+
+    private static void readSnapshot(File f, LongHashSet placed, LongHashSet grown) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("not a marker snapshot: " + f.getName());
+            byte version = in.readByte();
+            if (version != SNAPSHOT_VERSION) throw new IOException("unsupported marker snapshot version " + version);
+            for (int n = in.readInt(); n > 0; n--) placed.add(in.readLong());
+            for (int n = in.readInt(); n > 0; n--) grown.add(in.readLong());
+        }
+    }
+
+    private static void writeSnapshot(File f, LongHashSet placed, LongHashSet grown) throws IOException {
+        if (placed.isEmpty() && grown.isEmpty()) {
+            Files.deleteIfExists(f.toPath());
+            return;
+        }
+        f.getParentFile().mkdirs();
+        File tmp = new File(f.getParentFile(), f.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeByte(SNAPSHOT_VERSION);
+            out.writeInt(placed.size());
+            for (long pos : placed.toArray()) out.writeLong(pos);
+            out.writeInt(grown.size());
+            for (long pos : grown.toArray()) out.writeLong(pos);
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Applies journal records; a torn record at the tail (crash mid-write) is ignored. */
+    private static int replay(File journal, LongHashSet placed, LongHashSet grown, Logger log) {
+        if (!journal.exists()) return 0;
+        int applied = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+            long records = journal.length() / RECORD_BYTES;
+            for (long i = 0; i < records; i++) {
+                byte op = in.readByte();
+                long pos = in.readLong();
+                apply(op, pos, placed, grown);
+                applied++;
+            }
+        } catch (IOException e) {
+            log.warning("Pumpkin marker journal " + journal.getName() + " is damaged after "
+                    + applied + " record(s): " + e.getMessage());
+        }
+        return applied;
+    }
+
+    private static void apply(byte op, long pos, LongHashSet placed, LongHashSet grown) {
+        switch (op) {
+            case OP_PLACED -> { placed.add(pos); grown.remove(pos); }
+            case OP_GROWN  -> { grown.add(pos);  placed.remove(pos); }
+            default        -> { placed.remove(pos); grown.remove(pos); }
+        }
+    }
+
+    private void append(List<JournalBatch> batch) {
+        Set<FileChannel> touched = new HashSet<>();
+        for (JournalBatch b : batch) {
+            File f = b.files().journal();
+            try {
+                FileChannel ch = openJournals.get(f);
+                if (ch == null) {
+                    f.getParentFile().mkdirs();
+                    ch = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    openJournals.put(f, ch);
+                }
+                ByteBuffer buf = ByteBuffer.allocate(b.ops().length * RECORD_BYTES);
+                for (int i = 0; i < b.ops().length; i++) {
+                    buf.put(b.ops()[i]).putLong(b.positions()[i]);
+                }
+                buf.flip();
+                while (buf.hasRemaining()) ch.write(buf);
+                touched.add(ch);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to append pumpkin marker journal " + f.getName() + ": " + e.getMessage());
+            }
+        }
+        for (FileChannel ch : touched) {
+            try { ch.force(false); } catch (IOException ignored) { }
+        }
+    }
+
+    /** Folds snapshot + journal into a fresh snapshot and truncates the journal. */
+    private void compact(ShardFiles f) {
+        try {
+            compact(f, Collections.emptyList());
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to compact pumpkin marker shard " + f.snapshot().getName() + ": " + e.getMessage());
+        }
+    }
+
+    /** Same, with imported markers applied on top. */
+    private void compact(ShardFiles f, List<ImportChunk> imported) throws IOException {
+        Loaded current;
+        try {
+            current = read(f);
+        } catch (CompletionException e) {
+            throw (IOException) e.getCause();
+        }
+        importInto(current.placed(), current.grown(), imported);
+        writeSnapshot(f.snapshot(), current.placed(), current.grown());
+        FileChannel ch = openJournals.remove(f.journal());
+        if (ch != null) ch.close();
+        Files.deleteIfExists(f.journal().toPath());
+        Files.deleteIfExists(f.legacyYaml().toPath());
+    }
+
+    private static void importInto(LongHashSet placed, LongHashSet grown, List<ImportChunk> imported) {
+        for (ImportChunk c : imported) {
+            c.placed().forEach(pos -> apply(OP_PLACED, pos, placed, grown));
+            c.grown().forEach(pos -> apply(OP_GROWN, pos, placed, grown));
+        }
+    }
+
+    private void closeJournals() {
+        for (FileChannel ch : openJournals.values()) {
+            try { ch.close(); } catch (IOException ignored) { }
+        }
+        openJournals.clear();
+    }
+
+    private static final long INVALID_POS = Long.MIN_VALUE; // x = -2^25, outside the world border
+
+    /** Shard files written before the binary format: placed/grown lists of "x:y:z". */
+    private static void readLegacyYaml(File f, LongHashSet placed, LongHashSet grown) {
+        YamlConfiguration yml = YamlConfiguration.loadConfiguration(f);
+        for (String key : yml.getStringList("placed")) {
+            long pos = parsePos(key);
+            if (pos != INVALID_POS) placed.add(pos);
+        }
+        for (String key : yml.getStringList("grown")) {
+            long pos = parsePos(key);
+            if (pos != INVALID_POS) grown.add(pos);
+        }
+    }
+
+    /** Parses "x:y:z" */
+    private static long parsePos(String key) {
+        String[] xyz = key.split(":");
+        if (xyz.length != 3) return INVALID_POS;
+        try {
+            return pack(Integer.parseInt(xyz[0]), Integer.parseInt(xyz[1]), Integer.parseInt(xyz[2]));
+        } catch (NumberFormatException e) {
+            return INVALID_POS;
+        }
+    }
+
+    /**
+     * Reads every shard stored under dir without making it resident (offline tools / migration).
+     * Must not run while a store is writing to the same directory.
+     */
+    static void forEachStored(File dir, Logger log, MarkerVisitor visitor) {
+        File[] worldDirs = dir.listFiles(File::isDirectory);
+        if (worldDirs == null) return;
+        for (File worldDir : worldDirs) {
+            String[] names = worldDir.list();
+            if (names == null) continue;
+            Set<String> bases = new TreeSet<>();
+            for (String name : names) {
+                if (name.startsWith("r.") && (name.endsWith(".bin") || name.endsWith(".log") || name.endsWith(".yml"))) {
+                    bases.add(name.substring(0, name.length() - 4));
+                }
+            }
+            for (String base : bases) {
+                ShardFiles files = new ShardFiles(new File(worldDir, base + ".bin"), new File(worldDir, base + ".log"), new File(worldDir, base + ".yml"));
+                Loaded d;
+                try {
+                    d = read(files, log);
+                } catch (CompletionException e) {
+                    log.warning("Skipping unreadable pumpkin marker shard " + base + ": " + e.getMessage());
+                    continue;
+                }
+                String world = worldDir.getName();
+                d.placed().forEach(pos -> visitor.visit(world, pos, true));
+                d.grown().forEach(pos -> visitor.visit(world, pos, false));
+            }
+        }
+    }
+
+    /* =========================
+       One-time migration from pumpkinblocks.yml ("world:x:y:z" lists)
+       ========================= */
+
+    private void migrateLegacy(File legacy) {
+        if (legacy == null || !legacy.exists()) return;
+        try {
+            YamlConfiguration yml = YamlConfiguration.loadConfiguration(legacy);
+            Map<String, Shard> shards = new HashMap<>();
+            int count = 0;
+            for (boolean isPlaced : new boolean[]{true, false}) {
+                for (String key : yml.getStringList(isPlaced ? "placed" : "grown")) {
+                    int colon = key.indexOf(':');
+                    if (colon <= 0) continue;
+                    long pos = parsePos(key.substring(colon + 1));
+                    if (pos == INVALID_POS) continue;
+                    String world = key.substring(0, colon);
+                    int rx = unpackX(pos) >> (4 + REGION_SHIFT), rz = unpackZ(pos) >> (4 + REGION_SHIFT);
+                    Shard s = shards.computeIfAbsent(world + ":" + rx + ":" + rz,
+                            k -> new Shard(world, rx, rz, shardFiles(world, rx, rz)));
+                    apply(isPlaced ? OP_PLACED : OP_GROWN, pos, s.placed, s.grown);
+                    count++;
+                }
+            }
+            for (Shard s : shards.values()) {
+                // keep anything already sharded for that region
+                Loaded existing = read(s.files);
+                existing.placed().forEach(pos -> { if (!s.grown.contains(pos)) s.placed.add(pos); });
+                existing.grown().forEach(pos -> { if (!s.placed.contains(pos)) s.grown.add(pos); });
+                writeSnapshot(s.files.snapshot(), s.placed, s.grown);
+                Files.deleteIfExists(s.files.journal().toPath());
+                Files.deleteIfExists(s.files.legacyYaml().toPath());
+            }
+            Files.move(legacy.toPath(), new File(legacy.getParentFile(), legacy.getName() + ".migrated").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            plugin.getLogger().info("Migrated " + count + " pumpkin marker(s) from " + legacy.getName()
+                    + " into " + shards.size() + " region shard(s).");
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to migrate " + legacy.getName() + ": " + e.getMessage());
+        }
+    }
+}
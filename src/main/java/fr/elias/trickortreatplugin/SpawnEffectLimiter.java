@@ -0,0 +1,116 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Token buckets in front of spawn effects (spooky mobs, jump-scares), so farms and spawners cannot turn
+ * into a stream of sounds, disguises and tasks:
+ * - one bucket per chunk
+ * - one bucket per player, drawn from by effects within radius of that player
+ * An effect runs only when its chunk and every nearby player have a token; it then takes one from each.
+ * Buckets start full, so quiet areas still get their occasional scare. Rates come from effect-limits in
+ * hauntedmobs.yml (see ConfigSnapshot.EffectLimits). Main thread only.
+ */
+final class SpawnEffectLimiter {
+    private static final class Bucket {
+        double tokens;
+        long last; // nanoTime of the last refill
+    }
+
+    private final Map<UUID, Map<Long, Bucket>> chunks = new HashMap<>(); // world -> chunk key -> bucket
+    private final Map<UUID, Bucket> players = new HashMap<>();
+    private final List<Bucket> nearby = new ArrayList<>(); // scratch, reused per call
+    private int chunkCount;
+    private int pruneChunksAt = 1024;
+    private int prunePlayersAt = 256;
+
+    /** @return true when the effect may run at this spot (tokens have been taken) */
+    boolean tryAcquire(Location at, ConfigSnapshot.EffectLimits limits) {
+        if (limits == null) return true;
+        World world = at.getWorld();
+        if (world == null) return true;
+        long now = System.nanoTime();
+
+        Bucket chunk = null;
+        if (limits.chunkPerSecond() > 0) {
+            chunk = chunkBucket(world.getUID(), at.getBlockX() >> 4, at.getBlockZ() >> 4, limits, now);
+            if (refill(chunk, now, limits.chunkPerSecond(), limits.chunkBurst()) < 1) return false;
+        }
+
+        nearby.clear();
+        if (limits.playerPerSecond() > 0) {
+            double r2 = limits.playerRadius() * limits.playerRadius();
+            for (Player p : world.getPlayers()) {
+                if (p.getLocation().distanceSquared(at) > r2) continue;
+                Bucket b = players.get(p.getUniqueId());
+                if (b == null) {
+                    if (players.size() >= prunePlayersAt) prunePlayers(now, limits);
+                    b = full(limits.playerBurst(), now);
+                    players.put(p.getUniqueId(), b);
+                }
+                if (refill(b, now, limits.playerPerSecond(), limits.playerBurst()) < 1) return false;
+                nearby.add(b);
+            }
+        }
+
+        if (chunk != null) chunk.tokens -= 1;
+        for (Bucket b : nearby) b.tokens -= 1;
+        return true;
+    }
+
+    private Bucket chunkBucket(UUID world, int cx, int cz, ConfigSnapshot.EffectLimits limits, long now) {
+        Map<Long, Bucket> byChunk = chunks.computeIfAbsent(world, w -> new HashMap<>());
+        long key = ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+        Bucket b = byChunk.get(key);
+        if (b == null) {
+            if (chunkCount >= pruneChunksAt) pruneChunks(now, limits);
+            b = full(limits.chunkBurst(), now);
+            byChunk.put(key, b);
+            chunkCount++;
+        }
+        return b;
+    }
+
+    private static Bucket full(int burst, long now) {
+        Bucket b = new Bucket();
+        b.tokens = burst;
+        b.last = now;
+        return b;
+    }
+
+    /** @return the tokens available now */
+    private static double refill(Bucket b, long now, double perSecond, int burst) {
+        b.tokens = Math.min(burst, b.tokens + (now - b.last) * perSecond / 1e9);
+        b.last = now;
+        return b.tokens;
+    }
+
+    /* =========================
+       Pruning: a bucket that would be full again is the same as no bucket
+       ========================= */
+
+    private void pruneChunks(long now, ConfigSnapshot.EffectLimits limits) {
+        for (Iterator<Map<Long, Bucket>> worlds = chunks.values().iterator(); worlds.hasNext(); ) {
+            Map<Long, Bucket> byChunk = worlds.next();
+            byChunk.values().removeIf(b -> refill(b, now, limits.chunkPerSecond(), limits.chunkBurst()) >= limits.chunkBurst());
+            if (byChunk.isEmpty()) worlds.remove();
+        }
+        chunkCount = 0;
+        for (Map<Long, Bucket> byChunk : chunks.values()) chunkCount += byChunk.size();
+        pruneChunksAt = Math.max(1024, chunkCount * 2);
+    }
+
+    private void prunePlayers(long now, ConfigSnapshot.EffectLimits limits) {
+        players.values().removeIf(b -> refill(b, now, limits.playerPerSecond(), limits.playerBurst()) >= limits.playerBurst());
+        prunePlayersAt = Math.max(256, players.size() * 2);
+    }
+}
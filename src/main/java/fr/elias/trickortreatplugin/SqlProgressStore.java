@@ -0,0 +1,145 @@
+package fr.elias.trickortreatplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Embedded SQLite database (pumpkinprogress.db), using the driver bundled with Spigot.
+ * One connection guarded by this object; batches go through one prepared upsert in a single transaction.
+ * bigwin is indexed so the big-win query never scans the table.
+ */
+final class SqlProgressStore implements ProgressStore {
+    private static final String UPSERT =
+            "INSERT INTO pumpkin_progress (uuid, total, awarded, bigwin) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT(uuid) DO UPDATE SET total = excluded.total, awarded = excluded.awarded, bigwin = excluded.bigwin";
+
+    private final Connection conn;
+    private final PreparedStatement selectOne;
+    private final PreparedStatement upsert;
+    private final PreparedStatement selectBigWin;
+
+    SqlProgressStore(File dbFile) throws IOException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            conn = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
+            try (Statement st = conn.createStatement()) {
+                st.execute("PRAGMA journal_mode=WAL");
+                st.execute("PRAGMA synchronous=NORMAL");
+                st.execute("CREATE TABLE IF NOT EXISTS pumpkin_progress (" +
+                        "uuid CHAR(36) PRIMARY KEY, " +
+                        "total INTEGER NOT NULL DEFAULT 0, " +
+                        "awarded INTEGER NOT NULL DEFAULT 0, " +
+                        "bigwin INTEGER NOT NULL DEFAULT 0)");
+                st.execute("CREATE INDEX IF NOT EXISTS idx_pumpkin_progress_bigwin ON pumpkin_progress (bigwin) WHERE bigwin = 1");
+            }
+            selectOne = conn.prepareStatement("SELECT total, awarded, bigwin FROM pumpkin_progress WHERE uuid = ?");
+            upsert = conn.prepareStatement(UPSERT);
+            selectBigWin = conn.prepareStatement("SELECT uuid FROM pumpkin_progress WHERE bigwin = 1");
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IOException("Cannot open " + dbFile.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized PlayerProgress load(UUID uuid) throws IOException {
+        try {
+            selectOne.setString(1, uuid.toString());
+            try (ResultSet rs = selectOne.executeQuery()) {
+                return rs.next() ? read(rs, 1) : null;
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void update(UUID uuid, PlayerProgress pp) throws IOException {
+        updateAll(Map.of(uuid, pp));
+    }
+
+    @Override
+    public synchronized void updateAll(Map<UUID, PlayerProgress> batch) throws IOException {
+        if (batch.isEmpty()) return;
+        try {
+            conn.setAutoCommit(false);
+            try {
+                for (Map.Entry<UUID, PlayerProgress> e : batch.entrySet()) {
+                    PlayerProgress pp = e.getValue();
+                    upsert.setString(1, e.getKey().toString());
+                    upsert.setInt(2, pp.totalBroken);
+                    upsert.setInt(3, pp.levelsAwarded);
+                    upsert.setInt(4, pp.bigWinAwarded ? 1 : 0);
+                    upsert.addBatch();
+                }
+                upsert.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                upsert.clearBatch();
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void forEach(BiConsumer<UUID, PlayerProgress> action) throws IOException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT uuid, total, awarded, bigwin FROM pumpkin_progress")) {
+            while (rs.next()) {
+                UUID uuid = parseUuid(rs.getString(1));
+                if (uuid != null) action.accept(uuid, read(rs, 2));
+            }
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized List<UUID> bigWinners() throws IOException {
+        List<UUID> out = new ArrayList<>();
+        try (ResultSet rs = selectBigWin.executeQuery()) {
+            while (rs.next()) {
+                UUID uuid = parseUuid(rs.getString(1));
+                if (uuid != null) out.add(uuid);
+            }
+            return out;
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            conn.close(); // closes the prepared statements too
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static PlayerProgress read(ResultSet rs, int col) throws SQLException {
+        PlayerProgress pp = new PlayerProgress();
+        pp.totalBroken = rs.getInt(col);
+        pp.levelsAwarded = rs.getInt(col + 1);
+        pp.bigWinAwarded = rs.getInt(col + 2) != 0;
+        return pp;
+    }
+
+    private static UUID parseUuid(String s) {
+        try {
+            return UUID.fromString(s);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package fr.elias.trickortreatplugin;
 
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
@@ -9,12 +10,15 @@ import org.bukkit.entity.Player;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 public class TrickOrTreatCommand implements CommandExecutor, TabCompleter {
     private final TrickOrTreatPlugin plugin;
+    private final HuntDataTransfer dataTransfer;
 
     public TrickOrTreatCommand(TrickOrTreatPlugin plugin) {
         this.plugin = plugin;
+        this.dataTransfer = new HuntDataTransfer(plugin);
     }
 
     @Override
@@ -23,9 +27,20 @@ public class TrickOrTreatCommand implements CommandExecutor, TabCompleter {
         if (args.length == 0 || args[0].equalsIgnoreCase("help")) {
             sender.sendMessage(ChatColor.GOLD + "TrickOrTreat commands:");
             sender.sendMessage(ChatColor.YELLOW + "/" + label + " pumpkins" + ChatColor.GRAY + " — show your pumpkin progress");
+            sender.sendMessage(ChatColor.YELLOW + "/" + label + " top [n]" + ChatColor.GRAY + " — show the pumpkin leaderboard");
             sender.sendMessage(ChatColor.YELLOW + "/" + label + " horseman" + ChatColor.GRAY + " — spawn the Headless Horseman (admin)");
             if (sender.hasPermission("trickortreat.reload")) {
-                sender.sendMessage(ChatColor.YELLOW + "/" + label + " reload" + ChatColor.GRAY + " — reload all configs & handlers");
+                sender.sendMessage(ChatColor.YELLOW + "/" + label + " reload" + ChatColor.GRAY + " — reload all configs");
+            }
+            if (sender.hasPermission("trickortreat.queue")) {
+                sender.sendMessage(ChatColor.YELLOW + "/" + label + " queue" + ChatColor.GRAY + " — reward command queue stats");
+            }
+            if (sender.hasPermission("trickortreat.winners")) {
+                sender.sendMessage(ChatColor.YELLOW + "/" + label + " winners" + ChatColor.GRAY + " — players who got the big win");
+            }
+            if (sender.hasPermission("trickortreat.data")) {
+                sender.sendMessage(ChatColor.YELLOW + "/" + label + " data <export|import> <csv|ndjson> [progress|markers] [file]"
+                        + ChatColor.GRAY + " — move pumpkin data in/out of plugins/TrickOrTreat/data");
             }
             return true;
         }
@@ -39,10 +54,9 @@ public class TrickOrTreatCommand implements CommandExecutor, TabCompleter {
             int total = plugin.getPumpkinHandler().getTotal(p.getUniqueId());
             String display = plugin.getPumpkinHandler().getDisplayProgress(p.getUniqueId());
             if (plugin.getPumpkinHandler().getTotalLevels() > 1) {
-                int lvl = plugin.getPumpkinHandler().getCurrentLevelIndex(p.getUniqueId()) + 1;
-                int lvls = plugin.getPumpkinHandler().getTotalLevels();
+                String level = plugin.getPumpkinHandler().getLevelDisplay(p.getUniqueId());
                 p.sendMessage(ChatColor.GREEN + "Pumpkins: " + ChatColor.AQUA + display
-                        + ChatColor.GRAY + "  (Level " + lvl + "/" + lvls + ", total " + total + ")");
+                        + ChatColor.GRAY + "  (Level " + level + ", total " + total + ")");
             } else {
                 p.sendMessage(ChatColor.GREEN + "Pumpkins: " + ChatColor.AQUA + display
                         + ChatColor.GRAY + "  (total " + total + ")");
@@ -50,6 +64,35 @@ public class TrickOrTreatCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
+        // /tt top [n]
+        if (args[0].equalsIgnoreCase("top")) {
+            int n = 10;
+            if (args.length > 1) {
+                try {
+                    n = Math.max(1, Math.min(100, Integer.parseInt(args[1])));
+                } catch (NumberFormatException e) {
+                    sender.sendMessage(ChatColor.RED + "Usage: /" + label + " top [n]");
+                    return true;
+                }
+            }
+            PumpkinLeaderboard board = plugin.getPumpkinHandler().getLeaderboard();
+            List<PumpkinLeaderboard.Entry> top = board.top(n);
+            sender.sendMessage(ChatColor.GOLD + "Pumpkin leaderboard:");
+            if (top.isEmpty()) {
+                sender.sendMessage(ChatColor.GRAY + "No pumpkins found yet.");
+            }
+            int rank = 1;
+            for (PumpkinLeaderboard.Entry e : top) {
+                sender.sendMessage(ChatColor.YELLOW + "#" + rank++ + " " + ChatColor.AQUA + e.name()
+                        + ChatColor.GRAY + " — " + e.total());
+            }
+            if (sender instanceof Player p) {
+                int own = board.rank(p.getUniqueId());
+                if (own > n) sender.sendMessage(ChatColor.GRAY + "You are #" + own + ".");
+            }
+            return true;
+        }
+
         // /tt horseman
         if (args[0].equalsIgnoreCase("horseman")) {
             if (!sender.hasPermission("trickortreat.horseman")) {
@@ -74,8 +117,79 @@ public class TrickOrTreatCommand implements CommandExecutor, TabCompleter {
                 sender.sendMessage(ChatColor.RED + "You lack permission: trickortreat.reload");
                 return true;
             }
-            plugin.reloadAll();
-            sender.sendMessage(ChatColor.GREEN + "TrickOrTreat reloaded.");
+            // files are parsed off the main thread; the reply comes once the new settings are live
+            plugin.reloadAll(error -> sender.sendMessage(error == null
+                    ? ChatColor.GREEN + "TrickOrTreat reloaded."
+                    : ChatColor.RED + "Reload failed, settings unchanged: " + error));
+            return true;
+        }
+
+        // /tt queue
+        if (args[0].equalsIgnoreCase("queue")) {
+            if (!sender.hasPermission("trickortreat.queue")) {
+                sender.sendMessage(ChatColor.RED + "You lack permission: trickortreat.queue");
+                return true;
+            }
+            RewardCommandQueue.Metrics m = plugin.getRewardQueue().metrics();
+            sender.sendMessage(ChatColor.GOLD + "Reward command queue:");
+            sender.sendMessage(ChatColor.YELLOW + "Pending: " + ChatColor.AQUA + m.depth()
+                    + ChatColor.GRAY + " (peak " + m.maxDepth() + ")");
+            sender.sendMessage(ChatColor.YELLOW + "Dispatched: " + ChatColor.AQUA + m.dispatched()
+                    + ChatColor.GRAY + " — wait avg " + m.avgWaitMicros() / 1000.0 + " ms, max " + m.maxWaitMicros() / 1000.0 + " ms");
+            return true;
+        }
+
+        // /tt winners
+        if (args[0].equalsIgnoreCase("winners")) {
+            if (!sender.hasPermission("trickortreat.winners")) {
+                sender.sendMessage(ChatColor.RED + "You lack permission: trickortreat.winners");
+                return true;
+            }
+            // indexed in SQLite, a scan for the file formats; either way off the main thread
+            plugin.getPumpkinHandler().progressCache().queryBigWinners(winners -> {
+                sender.sendMessage(ChatColor.GOLD + "Big win awarded to " + winners.size() + " player(s):");
+                StringBuilder names = new StringBuilder();
+                for (UUID uuid : winners) {
+                    String name = Bukkit.getOfflinePlayer(uuid).getName();
+                    if (names.length() > 0) names.append(", ");
+                    names.append(name != null ? name : uuid.toString());
+                }
+                if (names.length() > 0) sender.sendMessage(ChatColor.AQUA + names.toString());
+            });
+            return true;
+        }
+
+        // /tt data <export|import> <csv|ndjson> [progress|markers|all] [file]
+        if (args[0].equalsIgnoreCase("data")) {
+            if (!sender.hasPermission("trickortreat.data")) {
+                sender.sendMessage(ChatColor.RED + "You lack permission: trickortreat.data");
+                return true;
+            }
+            String usage = ChatColor.RED + "Usage: /" + label + " data <export|import> <csv|ndjson> [progress|markers] [file]";
+            HuntDataTransfer.Format format = args.length > 2 ? HuntDataTransfer.Format.parse(args[2]) : null;
+            if (format == null) {
+                sender.sendMessage(usage);
+                return true;
+            }
+            String what = args.length > 3 ? args[3].toLowerCase() : null;
+            if (args[1].equalsIgnoreCase("export")) {
+                if (what == null) what = "all";
+                if (!what.equals("progress") && !what.equals("markers") && !what.equals("all")) {
+                    sender.sendMessage(usage);
+                    return true;
+                }
+                sender.sendMessage(ChatColor.YELLOW + "Exporting " + what + " as " + format.extension + "...");
+                dataTransfer.export(sender, format, what);
+            } else if (args[1].equalsIgnoreCase("import")) {
+                if (what == null || (!what.equals("progress") && !what.equals("markers"))) {
+                    sender.sendMessage(ChatColor.RED + "Import needs progress or markers: /" + label + " data import " + format.extension + " <progress|markers> [file]");
+                    return true;
+                }
+                sender.sendMessage(ChatColor.YELLOW + "Importing " + what + "...");
+                dataTransfer.importData(sender, format, what, args.length > 4 ? args[4] : null);
+            } else {
+                sender.sendMessage(usage);
+            }
             return true;
         }
 
@@ -89,9 +203,22 @@ public class TrickOrTreatCommand implements CommandExecutor, TabCompleter {
         if (args.length == 1) {
             String p = args[0].toLowerCase();
             if ("pumpkins".startsWith(p)) out.add("pumpkins");
+            if ("top".startsWith(p)) out.add("top");
             if ("help".startsWith(p)) out.add("help");
             if (sender.hasPermission("trickortreat.horseman") && "horseman".startsWith(p)) out.add("horseman");
             if (sender.hasPermission("trickortreat.reload") && "reload".startsWith(p)) out.add("reload");
+            if (sender.hasPermission("trickortreat.queue") && "queue".startsWith(p)) out.add("queue");
+            if (sender.hasPermission("trickortreat.winners") && "winners".startsWith(p)) out.add("winners");
+            if (sender.hasPermission("trickortreat.data") && "data".startsWith(p)) out.add("data");
+        } else if (args[0].equalsIgnoreCase("data") && sender.hasPermission("trickortreat.data") && args.length <= 4) {
+            String[] options = args.length == 2 ? new String[]{"export", "import"}
+                    : args.length == 3 ? new String[]{"csv", "ndjson"}
+                    : args[1].equalsIgnoreCase("import") ? new String[]{"progress", "markers"}
+                    : new String[]{"progress", "markers", "all"};
+            String p = args[args.length - 1].toLowerCase();
+            for (String o : options) {
+                if (o.startsWith(p)) out.add(o);
+            }
         }
         return out;
     }
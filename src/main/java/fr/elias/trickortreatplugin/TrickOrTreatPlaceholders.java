@@ -1,9 +1,12 @@
 package fr.elias.trickortreatplugin;
 
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.UUID;
+
 public class TrickOrTreatPlaceholders extends PlaceholderExpansion {
     private final TrickOrTreatPlugin plugin;
 
@@ -31,20 +34,74 @@ public class TrickOrTreatPlaceholders extends PlaceholderExpansion {
         return true;
     }
 
+    @Override
+    public String onRequest(OfflinePlayer player, @NotNull String params) {
+        if (player == null || player.isOnline()) return super.onRequest(player, params);
+        PumpkinHuntHandler handler = plugin.getPumpkinHandler();
+        if (handler == null) return "";
+        // offline: resident snapshot, or the empty one while the progress loads in the background
+        PlaceholderSnapshot snap = handler.getOfflineSnapshot(player.getUniqueId());
+        switch (params.toLowerCase()) {
+            case "pumpkins":
+                return snap.pumpkins();
+            case "pumpkins_total":
+                return snap.pumpkinsTotal();
+            case "pumpkins_level":
+                return snap.pumpkinsLevel();
+            case "rank":
+                int rank = handler.getLeaderboard().rank(player.getUniqueId());
+                return rank > 0 ? String.valueOf(rank) : "-";
+            case "cooldown_pumpkin":
+            case "cooldown_villager":
+                return cooldown(params.toLowerCase(), player.getUniqueId());
+            default:
+                return params.toLowerCase().startsWith("top_") ? top(handler.getLeaderboard(), params) : null;
+        }
+    }
+
     @Override
     public String onPlaceholderRequest(Player p, @NotNull String params) {
         if (p == null) return "";
-        switch (params.toLowerCase()) {
+        PumpkinHuntHandler handler = plugin.getPumpkinHandler();
+        if (handler == null) return "";
+        // pre-rendered on the main thread; a lock-free map lookup, safe from async callers
+        PlaceholderSnapshot snap = handler.getSnapshot(p.getUniqueId());
+        switch (params) {
             case "pumpkins": // "X/Y"
-                return plugin.getPumpkinHandler().getDisplayProgress(p.getUniqueId());
+                return snap.pumpkins();
             case "pumpkins_total": // total ever broken
-                return String.valueOf(plugin.getPumpkinHandler().getTotal(p.getUniqueId()));
+                return snap.pumpkinsTotal();
             case "pumpkins_level": // "L/N"
-                int lvl = plugin.getPumpkinHandler().getCurrentLevelIndex(p.getUniqueId()) + 1;
-                int lvls = plugin.getPumpkinHandler().getTotalLevels();
-                return lvl + "/" + lvls;
+                return snap.pumpkinsLevel();
+            case "rank": // position on the pumpkin leaderboard
+                int rank = handler.getLeaderboard().rank(p.getUniqueId());
+                return rank > 0 ? String.valueOf(rank) : "-";
+            case "cooldown_pumpkin": // seconds left, 0 when free
+            case "cooldown_villager":
+                return cooldown(params, p.getUniqueId());
             default:
-                return null;
+                if (params.startsWith("top_")) return top(handler.getLeaderboard(), params);
+                // mixed-case params are rare; only they pay for the lowercase copy
+                String lower = params.toLowerCase();
+                return lower.equals(params) ? null : onPlaceholderRequest(p, lower);
+        }
+    }
+
+    /** cooldown_<namespace>: whole seconds left, rounded up. */
+    private String cooldown(String params, UUID id) {
+        long ms = plugin.getCooldowns().namespace(params.substring(9)).remainingMillis(id);
+        return String.valueOf((ms + 999) / 1000);
+    }
+
+    /** top_<n>_name / top_<n>_total; parsed in place without substring copies. */
+    private static String top(PumpkinLeaderboard board, String params) {
+        int i = 4, n = 0;
+        while (i < params.length() && Character.isDigit(params.charAt(i)) && n < 100_000) {
+            n = n * 10 + (params.charAt(i++) - '0');
         }
+        if (n < 1 || i == 4) return null;
+        if (params.regionMatches(true, i, "_name", 0, 5) && params.length() == i + 5) return board.nameAt(n);
+        if (params.regionMatches(true, i, "_total", 0, 6) && params.length() == i + 6) return String.valueOf(board.totalAt(n));
+        return null;
     }
 }
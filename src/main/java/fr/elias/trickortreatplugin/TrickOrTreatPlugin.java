@@ -1,9 +1,6 @@
 package fr.elias.trickortreatplugin;
 
-import net.luckperms.api.LuckPerms;
-import net.luckperms.api.LuckPermsProvider;
-import net.luckperms.api.model.user.User;
-import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
@@ -12,25 +9,42 @@ import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
-import java.util.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class TrickOrTreatPlugin extends JavaPlugin {
     private static TrickOrTreatPlugin instance;
-    private BossSpawnManager bossSpawnManager;
-    private FileConfiguration hauntedMobsConfig;
-    private FileConfiguration pumpkinHuntConfig;
-
-    private final Map<UUID, Long> cooldowns = new HashMap<>();
-    private LibsDisguisesHandler disguises;
-    private PumpkinHuntHandler pumpkinHandler;
+    private BossSpawnManager bossSpawnManager; // survives reload: a live boss, its minions and forced chunk are kept
+
+    // Settings: parsed and compiled off the main thread on reload, then swapped in one step
+    private volatile FileConfiguration config;  // config.yml (served by getConfig)
+    private volatile ConfigSnapshot settings;   // config.yml, hauntedmobs.yml, pumpkinhunt.yml compiled (see ConfigSnapshot)
+    private final AtomicBoolean reloading = new AtomicBoolean(false);
+
+    private CooldownService cooldowns; // survives reload: running cooldowns are kept
+    private RewardCommandQueue rewardQueue; // survives reload: pending reward commands are kept
+    private EffectsEngine effects;
+    private CompiledReward.Services rewardServices; // queue + effects handed to rewards when they run
+    private GroupCache groups;          // LuckPerms group -> cooldown / rewards / login mob, per player
+    private volatile LibsDisguisesHandler disguises; // null when libdisguise is off or LibsDisguises is missing
+    private volatile PumpkinHuntHandler pumpkinHandler; // read by placeholders from async threads
     private int autoTaskId = -1;
+    private long autoIntervalSec = -1;  // interval of the running auto-spawn task
 
+    // Listeners are registered once and read the current settings per event
     private BossEventListener bossListener;
     private BossCombatListener combatListener; // NEW: track last hitter for boss rewards
     private MobSpawnHandler mobHandler;
     private VillagerInteractionHandler villagerHandler;
     private LoginDisguiseListener loginListener;
 
+    /** One read of the three files, compiled; built on any thread and installed by {@link #apply}. */
+    private record Loaded(FileConfiguration config, ConfigSnapshot settings, GroupCache.Table groups) { }
+
     @Override
     public void onEnable() {
         instance = this;
@@ -40,54 +54,44 @@ public class TrickOrTreatPlugin extends JavaPlugin {
         saveResourceIfMissing("hauntedmobs.yml");
         saveResourceIfMissing("pumpkinhunt.yml");
 
-        hauntedMobsConfig = load("hauntedmobs.yml");
-        pumpkinHuntConfig = load("pumpkinhunt.yml");
+        Loaded loaded;
+        try {
+            loaded = loadAll();
+        } catch (IOException | InvalidConfigurationException e) {
+            // same as Bukkit's loader: report it and continue with whatever could be read
+            getLogger().severe("Could not load the configuration (" + e.getMessage() + "), using the defaults.");
+            loaded = compile(loadLenient("config.yml", true), loadLenient("hauntedmobs.yml", false),
+                    loadLenient("pumpkinhunt.yml", false));
+        }
+        config = loaded.config();
+        settings = loaded.settings();
 
-        // Boss manager
-        bossSpawnManager = new BossSpawnManager(
-                this,
-                hauntedMobsConfig.getConfigurationSection("boss-mobs.headless-horseman"),
-                hauntedMobsConfig
-        );
+        groups = new GroupCache(this);
+        groups.apply(loaded.groups());
+        getServer().getPluginManager().registerEvents(groups, this);
+        rewardQueue = new RewardCommandQueue(this, config.getConfigurationSection("reward-commands"));
+        cooldowns = new CooldownService(this, config.getConfigurationSection("cooldowns"));
+        effects = new EffectsEngine(config.getConfigurationSection("effects"), getLogger());
+        rewardServices = new CompiledReward.Services(rewardQueue, effects);
 
         // LibsDisguises integration (from config.yml)
-        boolean ldEnabled = getConfig().getBoolean("libdisguise.enabled", false);
-        boolean ldPresent = getServer().getPluginManager().getPlugin("LibsDisguises") != null;
-        if (ldEnabled && ldPresent) {
-            disguises = new LibsDisguisesHandler(getLogger());
-            getLogger().info("LibsDisguises integration enabled (config.yml).");
-        } else {
-            disguises = null;
-            if (ldEnabled && !ldPresent) {
-                getLogger().warning("libdisguise.enabled = true in config.yml, but LibsDisguises is not installed.");
-            }
-        }
+        updateDisguises(true);
 
-        // === Auto-spawn scheduler (store task id for reload) ===
-        ConfigurationSection bossSec = hauntedMobsConfig.getConfigurationSection("boss-mobs.headless-horseman");
-        if (bossSec != null) {
-            ConfigurationSection auto = bossSec.getConfigurationSection("auto");
-            if (auto != null && auto.getBoolean("enabled", false)) {
-                long intervalSec = Math.max(5, auto.getLong("interval-seconds", 60));
-                autoTaskId = getServer().getScheduler().scheduleSyncRepeatingTask(
-                        this,
-                        bossSpawnManager::tryAutoSpawn,
-                        20L * 5,               // initial delay 5s
-                        20L * intervalSec      // repeat every N seconds
-                );
-                getLogger().info("Headless Horseman auto-spawn enabled (" + intervalSec + "s interval).");
-            }
-        }
+        // Boss manager
+        bossSpawnManager = new BossSpawnManager(this);
+
+        // === Auto-spawn scheduler (rescheduled when the interval changes on reload) ===
+        updateAutoSpawn();
 
-        // === Register listeners (store references so we can unregister on reload) ===
+        // === Register listeners (once; a reload only swaps the settings they read) ===
         PluginManager pm = getServer().getPluginManager();
 
-        pumpkinHandler   = new PumpkinHuntHandler(this, pumpkinHuntConfig);
+        pumpkinHandler   = new PumpkinHuntHandler(this);
         bossListener     = new BossEventListener(bossSpawnManager);      // forwards deaths to manager
         combatListener   = new BossCombatListener(bossSpawnManager);     // NEW: captures last damaging player
-        mobHandler       = new MobSpawnHandler(this, hauntedMobsConfig, disguises);
-        villagerHandler  = new VillagerInteractionHandler(this, disguises, hauntedMobsConfig);
-        loginListener    = new LoginDisguiseListener(this, disguises);
+        mobHandler       = new MobSpawnHandler(this);
+        villagerHandler  = new VillagerInteractionHandler(this);
+        loginListener    = new LoginDisguiseListener(this);
 
         pm.registerEvents(pumpkinHandler, this);
         pm.registerEvents(bossListener, this);
@@ -129,9 +133,23 @@ public class TrickOrTreatPlugin extends JavaPlugin {
             try { bossSpawnManager.despawnIfAlive(); } catch (Throwable ignored) {}
         }
 
-        // Persist pumpkin handler state
+        // Persist pumpkin handler state (final flush of the progress writer)
         if (pumpkinHandler != null) {
-            try { pumpkinHandler.saveState(); } catch (Throwable ignored) {}
+            try { pumpkinHandler.close(); } catch (Throwable ignored) {}
+        }
+
+        // Run reward commands that are still queued
+        if (rewardQueue != null) {
+            try { rewardQueue.flush(); } catch (Throwable ignored) {}
+        }
+
+        if (groups != null) {
+            try { groups.close(); } catch (Throwable ignored) {}
+        }
+
+        // Save running cooldowns (when cooldowns.persist is on)
+        if (cooldowns != null) {
+            try { cooldowns.close(); } catch (Throwable ignored) {}
         }
 
         // Unregister all listeners bound to this plugin instance
@@ -147,129 +165,202 @@ public class TrickOrTreatPlugin extends JavaPlugin {
         if (!f.exists()) saveResource(name, false);
     }
 
-    public void reloadAll() {
-        // Persist current state first
-        try {
-            if (pumpkinHandler != null) pumpkinHandler.saveState();
-        } catch (Exception ignored) {}
+    /* =========================
+       Reload
+       ========================= */
+
+    /**
+     * Reads and compiles the three files on an async thread, then installs them on the main thread in one step.
+     * Listeners, the boss, cooldowns, pumpkin progress and queued reward commands are untouched; a file that
+     * does not parse leaves every setting as it was. storage.* in pumpkinhunt.yml still needs a restart.
+     *
+     * @param done main thread: null on success, otherwise what went wrong
+     */
+    public void reloadAll(Consumer<String> done) {
+        if (!reloading.compareAndSet(false, true)) {
+            done.accept("A reload is already running.");
+            return;
+        }
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            Loaded loaded = null;
+            String error = null;
+            try {
+                loaded = loadAll();
+            } catch (IOException | InvalidConfigurationException | RuntimeException e) {
+                error = e.getMessage() != null ? e.getMessage() : e.toString();
+                getLogger().warning("Reload failed, keeping the current settings: " + error);
+            }
+            if (!isEnabled()) return;
+            Loaded result = loaded;
+            String failure = error;
+            getServer().getScheduler().runTask(this, () -> {
+                try {
+                    if (result != null) apply(result);
+                } finally {
+                    reloading.set(false);
+                }
+                done.accept(failure);
+            });
+        });
+    }
 
-        // Cancel scheduled auto task if running
-        if (autoTaskId != -1) {
-            getServer().getScheduler().cancelTask(autoTaskId);
-            autoTaskId = -1;
+    /** Main thread: swaps in a compiled load. Only reference writes and small reconfigurations happen here. */
+    private void apply(Loaded loaded) {
+        config = loaded.config();
+        settings = loaded.settings();
+        groups.apply(loaded.groups());
+        rewardQueue.configure(config.getConfigurationSection("reward-commands"));
+        effects.configure(config.getConfigurationSection("effects"), getLogger());
+        updateDisguises(false);
+        updateAutoSpawn();
+        pumpkinHandler.settingsChanged();
+    }
+
+    /** Any thread: strict parse (a syntax error throws instead of yielding an empty file), then compile. */
+    private Loaded loadAll() throws IOException, InvalidConfigurationException {
+        YamlConfiguration main = read("config.yml");
+        InputStream defaults = getResource("config.yml");
+        if (defaults != null) {
+            main.setDefaults(YamlConfiguration.loadConfiguration(new InputStreamReader(defaults, StandardCharsets.UTF_8)));
         }
+        return compile(main, read("hauntedmobs.yml"), read("pumpkinhunt.yml"));
+    }
 
-        // Unregister listeners safely (each may be null on first boot)
-        try { HandlerList.unregisterAll(pumpkinHandler); } catch (Throwable ignored) {}
-        try { HandlerList.unregisterAll(bossListener); }   catch (Throwable ignored) {}
-        try { HandlerList.unregisterAll(combatListener); } catch (Throwable ignored) {} // NEW
-        try { HandlerList.unregisterAll(mobHandler); }     catch (Throwable ignored) {}
-        try { HandlerList.unregisterAll(villagerHandler);} catch (Throwable ignored) {}
-        try { HandlerList.unregisterAll(loginListener); }  catch (Throwable ignored) {}
-
-        // Reload YAML configs
-        reloadConfig();
-        hauntedMobsConfig = load("hauntedmobs.yml");
-        pumpkinHuntConfig = load("pumpkinhunt.yml");
-
-        // Rebuild Boss manager with fresh config section
-        ConfigurationSection bossSec = hauntedMobsConfig.getConfigurationSection("boss-mobs.headless-horseman");
-        bossSpawnManager = new BossSpawnManager(
-                this,
-                bossSec,
-                hauntedMobsConfig
-        );
+    private Loaded compile(FileConfiguration main, FileConfiguration hauntedMobs, FileConfiguration pumpkinHunt) {
+        return new Loaded(main, ConfigSnapshot.compile(main, hauntedMobs, pumpkinHunt, getLogger()),
+                GroupCache.compile(main, getLogger()));
+    }
 
-        // Rebuild LibsDisguises handler per new config
-        boolean ldEnabled = getConfig().getBoolean("libdisguise.enabled", false);
+    private YamlConfiguration read(String fileName) throws IOException, InvalidConfigurationException {
+        YamlConfiguration yaml = new YamlConfiguration();
+        try {
+            yaml.load(new File(getDataFolder(), fileName));
+        } catch (InvalidConfigurationException e) {
+            throw new InvalidConfigurationException(fileName + ": " + e.getMessage());
+        }
+        return yaml;
+    }
+
+    private YamlConfiguration loadLenient(String fileName, boolean withDefaults) {
+        YamlConfiguration yaml = YamlConfiguration.loadConfiguration(new File(getDataFolder(), fileName));
+        InputStream defaults = withDefaults ? getResource(fileName) : null;
+        if (defaults != null) {
+            yaml.setDefaults(YamlConfiguration.loadConfiguration(new InputStreamReader(defaults, StandardCharsets.UTF_8)));
+        }
+        return yaml;
+    }
+
+    private void updateDisguises(boolean startup) {
+        boolean ldEnabled = settings.disguises().enabled();
         boolean ldPresent = getServer().getPluginManager().getPlugin("LibsDisguises") != null;
         if (ldEnabled && ldPresent) {
-            disguises = new LibsDisguisesHandler(getLogger());
+            if (disguises == null) {
+                disguises = new LibsDisguisesHandler(getLogger());
+                getLogger().info("LibsDisguises integration enabled (config.yml).");
+            }
         } else {
             disguises = null;
+            if (startup && ldEnabled) {
+                getLogger().warning("libdisguise.enabled = true in config.yml, but LibsDisguises is not installed.");
+            }
         }
+    }
 
-        // Reschedule auto-spawn if configured
-        if (bossSec != null) {
-            ConfigurationSection auto = bossSec.getConfigurationSection("auto");
-            if (auto != null && auto.getBoolean("enabled", false)) {
-                long intervalSec = Math.max(5, auto.getLong("interval-seconds", 60));
-                autoTaskId = getServer().getScheduler().scheduleSyncRepeatingTask(
-                        this,
-                        bossSpawnManager::tryAutoSpawn,
-                        20L * 5,
-                        20L * intervalSec
-                );
-            }
+    private void updateAutoSpawn() {
+        ConfigSnapshot.Boss boss = settings.haunted().boss();
+        long intervalSec = boss != null && boss.auto().enabled() ? boss.auto().intervalSeconds() : -1;
+        if (intervalSec == autoIntervalSec) return; // unchanged: keep the running task and its phase
+
+        if (autoTaskId != -1) {
+            getServer().getScheduler().cancelTask(autoTaskId);
+            autoTaskId = -1;
         }
+        autoIntervalSec = intervalSec;
+        if (intervalSec < 0) return;
+        autoTaskId = getServer().getScheduler().scheduleSyncRepeatingTask(
+                this,
+                bossSpawnManager::tryAutoSpawn,
+                20L * 5,               // initial delay 5s
+                20L * intervalSec      // repeat every N seconds
+        );
+        getLogger().info("Headless Horseman auto-spawn enabled (" + intervalSec + "s interval).");
+    }
 
-        // Re-register listeners bound to refreshed configs
-        PluginManager pm = getServer().getPluginManager();
+    /* =========================
+       Accessors
+       ========================= */
 
-        pumpkinHandler   = new PumpkinHuntHandler(this, pumpkinHuntConfig);
-        bossListener     = new BossEventListener(bossSpawnManager);
-        combatListener   = new BossCombatListener(bossSpawnManager); // NEW
-        mobHandler       = new MobSpawnHandler(this, hauntedMobsConfig, disguises);
-        villagerHandler  = new VillagerInteractionHandler(this, disguises, hauntedMobsConfig);
-        loginListener    = new LoginDisguiseListener(this, disguises);
+    /** config.yml as of the last (re)load. */
+    @Override
+    public FileConfiguration getConfig() {
+        if (config == null) reloadConfig(); // before onEnable: JavaPlugin's own copy is never filled
+        return config;
+    }
 
-        pm.registerEvents(pumpkinHandler, this);
-        pm.registerEvents(bossListener, this);
-        pm.registerEvents(combatListener, this); // NEW
-        pm.registerEvents(mobHandler, this);
-        pm.registerEvents(villagerHandler, this);
-        pm.registerEvents(loginListener, this);
+    /**
+     * Bukkit contract, main thread: when this returns, getConfig() and the compiled settings both reflect the
+     * files. Loads, compiles and applies all three files in place, like {@link #reloadAll} without the async
+     * parse; a file that does not parse keeps every setting as it was (logged). Before onEnable has loaded
+     * anything only config.yml is read.
+     */
+    @Override
+    public void reloadConfig() {
+        if (settings == null || !isEnabled()) {
+            config = loadLenient("config.yml", true);
+            return;
+        }
+        try {
+            apply(loadAll());
+        } catch (IOException | InvalidConfigurationException | RuntimeException e) {
+            getLogger().warning("reloadConfig() failed, keeping the current settings: "
+                    + (e.getMessage() != null ? e.getMessage() : e.toString()));
+        }
+    }
+
+    /** Current compiled settings; read it once per event and use that instance throughout. */
+    ConfigSnapshot settings() {
+        return settings;
     }
 
-    private FileConfiguration load(String fileName) {
-        return YamlConfiguration.loadConfiguration(new File(getDataFolder(), fileName));
+    LibsDisguisesHandler getDisguises() {
+        return disguises;
     }
 
     public static TrickOrTreatPlugin getInstance() {
         return instance;
     }
 
+    RewardCommandQueue getRewardQueue() {
+        return rewardQueue;
+    }
+
+    EffectsEngine getEffects() {
+        return effects;
+    }
+
+    CompiledReward.Services getRewardServices() {
+        return rewardServices;
+    }
+
     public PumpkinHuntHandler getPumpkinHandler() {
         return pumpkinHandler;
     }
 
-    // ---- Helpers (LuckPerms-safe) ----
+    // ---- Group settings (see GroupCache) ----
     public long getCooldown(Player player) {
-        String group = safePrimaryGroup(player);
-        FileConfiguration cfg = getConfig();
-        if (cfg.isSet("custom-cooldowns." + group)) {
-            return cfg.getLong("custom-cooldowns." + group);
-        }
-        if (cfg.isSet("custom-cooldowns.default")) {
-            return cfg.getLong("custom-cooldowns.default");
-        }
-        return cfg.getLong("default-cooldown", 60);
+        return groups.profile(player).cooldownSeconds();
     }
 
-    public Map<String, Object> getTrickOrTreat(Player player) {
-        FileConfiguration cfg = getConfig();
-        boolean perGroup = cfg.getBoolean("reward-per-luckpermsgroups", true);
-        String group = safePrimaryGroup(player);
-
-        String base = "rewards.";
-        String path = perGroup && cfg.isConfigurationSection(base + group) ? base + group : base + "default";
-        if (!cfg.isConfigurationSection(path)) {
-            return Collections.emptyMap();
-        }
-        return cfg.getConfigurationSection(path).getValues(false);
+    /** Compiled rewards.<group> for the player's primary group (or rewards.default); null when none is configured. */
+    public CompiledReward.TrickOrTreat getTrickOrTreat(Player player) {
+        return groups.profile(player).rewards();
     }
 
-    private String safePrimaryGroup(Player player) {
-        try {
-            LuckPerms lp = LuckPermsProvider.get();
-            User u = lp.getUserManager().getUser(player.getUniqueId());
-            return (u != null && u.getPrimaryGroup() != null) ? u.getPrimaryGroup() : "default";
-        } catch (Throwable ignored) {
-            return "default";
-        }
+    GroupCache getGroups() {
+        return groups;
     }
 
-    public Map<UUID, Long> getCooldowns() {
+    CooldownService getCooldowns() {
         return cooldowns;
     }
 }
@@ -1,49 +1,41 @@
 package fr.elias.trickortreatplugin;
 
-import org.bukkit.Bukkit;
-import org.bukkit.Sound;
-import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Entity;
-import org.bukkit.entity.Firework;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Villager;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 
-import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
 
 public class VillagerInteractionHandler implements Listener {
     private final TrickOrTreatPlugin plugin;
-    // Primary config (config.yml)
-    private final FileConfiguration mainCfg;
-    // Secondary config (hauntedmobs.yml) for optional extra knobs
-    private final FileConfiguration hauntedCfg;
-    private final LibsDisguisesHandler disguises; // null if LD disabled/not installed
-
-    public VillagerInteractionHandler(TrickOrTreatPlugin plugin,
-                                      LibsDisguisesHandler disguises,
-                                      FileConfiguration hauntedMobsConfig) {
+    private final CooldownService.Namespace cooldown; // separate from the pumpkin one
+
+    /**
+     * villager-interaction (hauntedmobs.yml first, then config.yml) and libdisguise (config.yml) are read
+     * per click from the current settings.
+     */
+    public VillagerInteractionHandler(TrickOrTreatPlugin plugin) {
         this.plugin = plugin;
-        this.disguises = disguises;
-        this.mainCfg = plugin.getConfig();      // read libdisguise & rewards/cooldowns from config.yml
-        this.hauntedCfg = hauntedMobsConfig;    // optional extras (villager-interaction / villager-trick)
+        this.cooldown = plugin.getCooldowns().namespace("villager");
     }
 
     @EventHandler
     public void onVillagerInteract(PlayerInteractEntityEvent event) {
         Entity e = event.getRightClicked();
         if (!(e instanceof Villager)) return;
+        ConfigSnapshot config = plugin.settings();
+        ConfigSnapshot.Villager settings = config.villager();
 
         // Optional: cancel trade UI (prefer hauntedmobs.yml key; fallback to config.yml if you add it there)
-        if (getBool("villager-interaction.cancel-trade", true)) {
+        if (settings.cancelTrade()) {
             event.setCancelled(true);
         }
 
         // Optional: restrict to named villager
-        String requiredName = getString("villager-interaction.only-named", "").trim();
+        String requiredName = settings.onlyNamed();
         if (!requiredName.isEmpty()) {
             String custom = ((Villager) e).getCustomName();
             if (custom == null || !org.bukkit.ChatColor.stripColor(custom).equalsIgnoreCase(requiredName)) {
@@ -54,139 +46,60 @@ public class VillagerInteractionHandler implements Listener {
         Player player = event.getPlayer();
 
         // Optional: require empty hand
-        if (getBool("villager-interaction.require-empty-hand", false)
+        if (settings.requireEmptyHand()
                 && player.getInventory().getItemInMainHand() != null
                 && player.getInventory().getItemInMainHand().getType().isItem()) {
-            sendConfigured(player, "villager-interaction.messages.require-empty-hand",
-                    "§cEmpty your hand to trick-or-treat!");
+            send(player, settings.requireEmptyHandMessage());
             return;
         }
 
         // Cooldown (config.yml provides the group cooldowns)
         if (!player.hasPermission("trickortreat.bypass.cooldown")) {
-            UUID id = player.getUniqueId();
-            long now = System.currentTimeMillis();
-            long cooldownMs = plugin.getCooldown(player) * 1000L;
-
-            Long last = plugin.getCooldowns().get(id);
-            if (last != null && now - last < cooldownMs) {
-                long left = (cooldownMs - (now - last)) / 1000L;
-                String msg = getString("villager-interaction.messages.cooldown",
-                        "§cYou are on cooldown. Please wait %seconds% seconds.");
-                player.sendMessage(msg.replace("%seconds%", String.valueOf(left)));
+            long leftMs = cooldown.tryAcquire(player.getUniqueId(), plugin.getCooldown(player) * 1000L);
+            if (leftMs > 0) {
+                long left = leftMs / 1000L;
+                send(player, settings.cooldownMessage().replace("%seconds%", String.valueOf(left)));
                 return;
             }
-            plugin.getCooldowns().put(id, now);
         }
 
         // Rewards (from config.yml via plugin.getTrickOrTreat)
-        Map<String, Object> rootReward = plugin.getTrickOrTreat(player);
-        if (rootReward == null || rootReward.isEmpty()) {
-            sendConfigured(player, "villager-interaction.messages.no-reward", "§cNo rewards configured.");
+        CompiledReward.TrickOrTreat rootReward = plugin.getTrickOrTreat(player);
+        if (rootReward == null) {
+            send(player, settings.noRewardMessage());
             return;
         }
 
-        triggerReward(player, rootReward);
+        triggerReward(player, rootReward, config);
     }
 
-    @SuppressWarnings("unchecked")
-    private void triggerReward(Player player, Map<String, Object> rewardRoot) {
-        boolean isTreat = rollTreat();
-        String branch = isTreat ? "treats" : "tricks";
-
-        Object branchObj = rewardRoot.get(branch);
-
-        // Accept both Map and ConfigurationSection
-        Map<String, Object> selected = null;
-        if (branchObj instanceof Map) {
-            selected = (Map<String, Object>) branchObj;
-        } else if (branchObj instanceof org.bukkit.configuration.ConfigurationSection) {
-            selected = ((org.bukkit.configuration.ConfigurationSection) branchObj).getValues(false);
-        }
+    private void triggerReward(Player player, CompiledReward.TrickOrTreat rewardRoot, ConfigSnapshot config) {
+        boolean isTreat = rollTreat(config.villager());
+        CompiledReward selected = isTreat ? rewardRoot.treats() : rewardRoot.tricks();
 
         if (selected == null) {
-            player.sendMessage("§cInvalid reward config (" + branch + ").");
+            player.sendMessage("§cInvalid reward config (" + (isTreat ? "treats" : "tricks") + ").");
             return;
         }
 
-        // Command (console)
-        String command = String.valueOf(selected.getOrDefault("command", ""));
-        if (!command.isEmpty()) {
-            Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command.replace("%player%", player.getName()));
-        }
-
-        // Message
-        String message = String.valueOf(selected.getOrDefault("message", ""));
-        if (!message.isEmpty()) {
-            player.sendMessage(message);
-        }
-
-        // Event: firework + sound
-        Object eventObj = selected.get("event");
-        if (eventObj instanceof Map) {
-            Map<String, Object> evt = (Map<String, Object>) eventObj;
-
-            if (Boolean.TRUE.equals(evt.get("firework"))) {
-                player.getWorld().spawn(player.getLocation(), Firework.class);
-            }
-
-            Object soundName = evt.get("sound");
-            if (soundName instanceof String) {
-                try {
-                    player.getWorld().playSound(
-                            player.getLocation(),
-                            Sound.valueOf(((String) soundName).toUpperCase()),
-                            1.0F, 1.0F
-                    );
-                } catch (IllegalArgumentException ignored) {}
-            }
-        }
+        // Command (console), message, firework + sound
+        selected.give(plugin.getRewardServices(), player);
 
         // LibsDisguises trick (unchanged)
-        boolean libEnabled = mainCfg.getBoolean("libdisguise.enabled", false);
-        if (!isTreat && disguises != null && libEnabled
-                && mainCfg.getBoolean("libdisguise.villager-trick.enabled", true)) {
-            String mob = mainCfg.getString("libdisguise.villager-trick.mob", "WITCH");
-            int secs = Math.max(1, mainCfg.getInt("libdisguise.villager-trick.duration-seconds", 8));
-            disguises.disguisePlayerTemporarily(player, mob, secs, plugin);
+        ConfigSnapshot.VillagerTrick trick = config.disguises().villagerTrick();
+        LibsDisguisesHandler disguises = plugin.getDisguises(); // null if LD disabled/not installed
+        if (!isTreat && disguises != null && config.disguises().enabled() && trick.enabled()) {
+            disguises.disguisePlayerTemporarily(player, trick.mob(), trick.seconds(), plugin);
         }
     }
 
 
-    private boolean rollTreat() {
-        // Prefer a configurable chance if provided; default 50/50
-        double treatChance = getDouble("villager-interaction.treat-chance", 0.5D);
-        treatChance = Math.max(0D, Math.min(1D, treatChance));
-        return ThreadLocalRandom.current().nextDouble() < treatChance;
+    private static boolean rollTreat(ConfigSnapshot.Villager settings) {
+        // villager-interaction.treat-chance, default 50/50
+        return ThreadLocalRandom.current().nextDouble() < settings.treatChance();
     }
 
-    private void sendConfigured(Player p, String path, String fallback) {
-        String msg = getString(path, fallback);
+    private static void send(Player p, String msg) {
         if (msg != null && !msg.isEmpty()) p.sendMessage(msg);
     }
-
-    // ------- Config getters with fallback: hauntedmobs.yml first, then config.yml -------
-    private boolean getBool(String path, boolean def) {
-        if (hauntedCfg.isBoolean(path)) return hauntedCfg.getBoolean(path);
-        if (mainCfg.isBoolean(path)) return mainCfg.getBoolean(path);
-        return def;
-    }
-    private String getString(String path, String def) {
-        if (hauntedCfg.isString(path)) return hauntedCfg.getString(path, def);
-        if (mainCfg.isString(path)) return mainCfg.getString(path, def);
-        return def;
-    }
-    private int getInt(String path, int def) {
-        if (hauntedCfg.isInt(path)) return hauntedCfg.getInt(path, def);
-        if (mainCfg.isInt(path)) return mainCfg.getInt(path, def);
-        return def;
-    }
-    private double getDouble(String path, double def) {
-        if (hauntedCfg.isDouble(path)) return hauntedCfg.getDouble(path, def);
-        if (mainCfg.isDouble(path)) return mainCfg.getDouble(path, def);
-        // isInt fallback (YAML ints)
-        if (hauntedCfg.isInt(path)) return hauntedCfg.getInt(path);
-        if (mainCfg.isInt(path)) return mainCfg.getInt(path);
-        return def;
-    }
 }
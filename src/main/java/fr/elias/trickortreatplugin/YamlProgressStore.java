@@ -0,0 +1,92 @@
+package fr.elias.trickortreatplugin;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * pumpkinprogress.yml: one section per UUID (total / awarded / bigwin).
+ * Legacy int-only entries (just the total) are still read.
+ */
+final class YamlProgressStore implements ProgressStore {
+    private final File file;
+    private final Logger log;
+    private final YamlConfiguration yaml;
+
+    YamlProgressStore(File file, Logger log) {
+        this.file = file;
+        this.log = log;
+        this.yaml = YamlConfiguration.loadConfiguration(file);
+    }
+
+    @Override
+    public synchronized PlayerProgress load(UUID uuid) {
+        return parse(uuid.toString());
+    }
+
+    @Override
+    public void update(UUID uuid, PlayerProgress pp) throws IOException {
+        updateAll(Map.of(uuid, pp));
+    }
+
+    @Override
+    public synchronized void updateAll(Map<UUID, PlayerProgress> batch) throws IOException {
+        for (Map.Entry<UUID, PlayerProgress> e : batch.entrySet()) {
+            PlayerProgress pp = e.getValue();
+            String key = e.getKey().toString();
+            yaml.set(key, null); // drop legacy int-only value before writing the section
+            yaml.set(key + ".total", pp.totalBroken);
+            yaml.set(key + ".awarded", pp.levelsAwarded);
+            yaml.set(key + ".bigwin", pp.bigWinAwarded);
+        }
+        yaml.save(file);
+    }
+
+    @Override
+    public synchronized void forEach(BiConsumer<UUID, PlayerProgress> action) {
+        for (String key : yaml.getKeys(false)) {
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(key);
+            } catch (IllegalArgumentException e) {
+                log.warning("Skipping invalid UUID in " + file.getName() + ": " + key);
+                continue;
+            }
+            PlayerProgress pp = parse(key);
+            if (pp != null) action.accept(uuid, pp);
+        }
+    }
+
+    /** Each batch saves the whole file; /tt data import asks for binary or sqlite instead. */
+    @Override
+    public boolean bulkImport() {
+        return false;
+    }
+
+    @Override
+    public void close() { }
+
+    /** Back-compat: allow int OR section. */
+    private PlayerProgress parse(String key) {
+        if (yaml.isInt(key)) {
+            PlayerProgress pp = new PlayerProgress();
+            pp.totalBroken = yaml.getInt(key);
+            return pp;
+        }
+        if (yaml.isConfigurationSection(key)) {
+            ConfigurationSection s = yaml.getConfigurationSection(key);
+            PlayerProgress pp = new PlayerProgress();
+            pp.totalBroken = s.getInt("total", 0);
+            pp.levelsAwarded = s.getInt("awarded", 0);
+            pp.bigWinAwarded = s.getBoolean("bigwin", false);
+            return pp;
+        }
+        return null;
+    }
+}